@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2018 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.ioswitch;
+
+import javafx.scene.Node;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+
+/**
+ * The Flight Recorder events of SwitchEvents. This is the only class that
+ * refers to jdk.jfr, it is built from src/jfr if the JDK has Flight
+ * Recorder and loaded by name. No event is created unless its type is
+ * enabled in a running recording.
+ */
+final class FlightRecorderEvents implements SwitchEvents.Recorder {
+    private final EventType clickType;
+    private final EventType changeType;
+    private final EventType animateType;
+    private final EventType settledType;
+    private final EventType queuedUpdateType;
+
+
+    // ******************** Constructors **************************************
+    FlightRecorderEvents() {
+        clickType        = EventType.getEventType(Click.class);
+        changeType       = EventType.getEventType(SelectedChange.class);
+        animateType      = EventType.getEventType(Animate.class);
+        settledType      = EventType.getEventType(Settled.class);
+        queuedUpdateType = EventType.getEventType(QueuedUpdate.class);
+    }
+
+
+    // ******************** Methods *******************************************
+    @Override public Object clickStarted(final Node SWITCH) {
+        if (!clickType.isEnabled()) { return null; }
+        Click event = new Click();
+        init(event, SWITCH);
+        event.begin();
+        return event;
+    }
+
+    @Override public void clickFinished(final Object EVENT) {
+        if (null == EVENT) { return; }
+        ((Click) EVENT).commit();
+    }
+
+    @Override public Object changeStarted(final Node SWITCH, final boolean SELECTED) {
+        if (!changeType.isEnabled()) { return null; }
+        SelectedChange event = new SelectedChange();
+        init(event, SWITCH);
+        event.selected = SELECTED;
+        event.begin();
+        return event;
+    }
+
+    @Override public void changeFinished(final Object EVENT) {
+        if (null == EVENT) { return; }
+        ((SelectedChange) EVENT).commit();
+    }
+
+    @Override public Object animateStarted(final Node SWITCH, final String KIND) {
+        if (!animateType.isEnabled()) { return null; }
+        Animate event = new Animate();
+        init(event, SWITCH);
+        event.kind = KIND;
+        event.begin();
+        return event;
+    }
+
+    @Override public void animateFinished(final Object EVENT, final boolean SNAPPED) {
+        if (null == EVENT) { return; }
+        Animate event = (Animate) EVENT;
+        event.snapped = SNAPPED;
+        event.commit();
+    }
+
+    @Override public Object settleStarted(final Node SWITCH, final boolean SELECTED) {
+        if (!settledType.isEnabled()) { return null; }
+        Settled event = new Settled();
+        init(event, SWITCH);
+        event.selected = SELECTED;
+        event.begin();
+        return event;
+    }
+
+    @Override public void settled(final Object EVENT, final boolean SUPERSEDED) {
+        if (null == EVENT) { return; }
+        Settled event = (Settled) EVENT;
+        event.superseded = SUPERSEDED;
+        event.commit();
+    }
+
+    @Override public void queuedUpdateApplied(final Node SWITCH, final boolean SELECTED, final long QUEUE_TIME, final boolean APPLIED) {
+        if (!queuedUpdateType.isEnabled()) { return; }
+        QueuedUpdate event = new QueuedUpdate();
+        if (!event.shouldCommit()) { return; }
+        init(event, SWITCH);
+        event.selected  = SELECTED;
+        event.queueTime = QUEUE_TIME;
+        event.applied   = APPLIED;
+        event.commit();
+    }
+
+    private static void init(final SwitchEvent EVENT, final Node SWITCH) {
+        EVENT.switchId = SWITCH instanceof IosSwitch ? ((IosSwitch) SWITCH).getAuditId() : System.identityHashCode(SWITCH);
+        EVENT.nodeId   = SWITCH.getId();
+    }
+
+
+    // ******************** Inner Classes *************************************
+    @Category({ "JavaFX", "IosSwitch" })
+    abstract static class SwitchEvent extends Event {
+        @Label("Switch Id") @Description("Audit id of the switch")
+        int    switchId;
+        @Label("Node Id")
+        String nodeId;
+    }
+
+    @Name("eu.hansolo.fx.ioswitch.Click") @Label("Switch Click")
+    @Description("From the mouse press to the click on the switch")
+    static final class Click extends SwitchEvent {}
+
+    @Name("eu.hansolo.fx.ioswitch.SelectedChange") @Label("Switch Selected Change")
+    @Description("Handling of a change of the selected state, including the start of the animation")
+    static final class SelectedChange extends SwitchEvent {
+        @Label("Selected")
+        boolean selected;
+    }
+
+    @Name("eu.hansolo.fx.ioswitch.Animate") @Label("Switch Animate")
+    @Description("Preparing and starting an animation of the switch")
+    static final class Animate extends SwitchEvent {
+        @Label("Kind")
+        String  kind;
+        @Label("Snapped") @Description("The switch jumped to the new state because of its AnimationPolicy")
+        boolean snapped;
+    }
+
+    @Name("eu.hansolo.fx.ioswitch.Settled") @Label("Switch Settled")
+    @Description("From the change of the selected state until the animation finished")
+    static final class Settled extends SwitchEvent {
+        @Label("Selected")
+        boolean selected;
+        @Label("Superseded") @Description("The switch changed again before it settled")
+        boolean superseded;
+    }
+
+    @Name("eu.hansolo.fx.ioswitch.QueuedUpdate") @Label("Switch Queued Update")
+    @Description("A state requested with setSelectedLater() was taken from the queue on the FX thread")
+    static final class QueuedUpdate extends SwitchEvent {
+        @Label("Selected")
+        boolean selected;
+        @Label("Queue Time") @Timespan(Timespan.NANOSECONDS)
+        long    queueTime;
+        @Label("Applied") @Description("False if the state was already set")
+        boolean applied;
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2018 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.ioswitch;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Restores COUNT switch states from a SwitchBankStore in one bulk operation
+ * and, for comparison, one by one from a boolean per switch like a config
+ * file would. Neither needs the FX platform because the bank has no bound
+ * switches.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BankStoreBenchmark {
+    @Param({ "1000000" })
+    public int              count;
+    private Path            path;
+    private SwitchBankStore store;
+    private SwitchBank      bank;
+    private boolean[]       states;
+
+
+    @Setup public void setup() throws Exception {
+        Random random = new Random(42);
+        states = new boolean[count];
+        bank   = new SwitchBank(count);
+        for (int i = 0 ; i < count ; i++) {
+            states[i] = random.nextBoolean();
+            bank.set(i, states[i]);
+        }
+        path  = Files.createTempFile("switch-bank", ".bin");
+        Files.delete(path);
+        store = SwitchBankStore.open(path, count);
+        store.save(bank);
+        bank  = new SwitchBank(count);
+    }
+
+    @TearDown public void tearDown() throws Exception {
+        store.close();
+        Files.deleteIfExists(path);
+    }
+
+    @Benchmark public SwitchBank restore() {
+        store.restore(bank);
+        return bank;
+    }
+
+    @Benchmark public SwitchBank restoreOneByOne() {
+        for (int i = 0 ; i < count ; i++) { bank.set(i, states[i]); }
+        return bank;
+    }
+
+    @Benchmark public SwitchBankStore save() {
+        store.save(bank);
+        return store;
+    }
+}
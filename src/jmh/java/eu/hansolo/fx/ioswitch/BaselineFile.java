@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2018 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.ioswitch;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.function.ToDoubleFunction;
+
+
+/**
+ * Results and baselines of the headless suites, stored as sorted properties
+ * files without a date so they can be diffed.
+ */
+final class BaselineFile {
+
+    // ******************** Constructors **************************************
+    private BaselineFile() {}
+
+
+    // ******************** Methods *******************************************
+    /**
+     * Prints and returns the number of results that exceed their baseline by
+     * more than the tolerance (0.25 = 25%) plus the absolute slack of their key.
+     */
+    static int compare(final Map<String, Double> RESULTS, final Map<String, Double> BASELINE, final ToDoubleFunction<String> TOLERANCE,
+                       final ToDoubleFunction<String> SLACK) {
+        List<String> failed = new ArrayList<>();
+        for (Map.Entry<String, Double> entry : BASELINE.entrySet()) {
+            Double result = RESULTS.get(entry.getKey());
+            if (null == result) { continue; }
+            double limit = entry.getValue() + Math.abs(entry.getValue()) * TOLERANCE.applyAsDouble(entry.getKey()) + SLACK.applyAsDouble(entry.getKey());
+            if (result > limit) {
+                failed.add(String.format(Locale.US, "%s: %.2f exceeds %.2f (baseline %.2f)", entry.getKey(), result, limit, entry.getValue()));
+            }
+        }
+        failed.forEach(System.out::println);
+        return failed.size();
+    }
+
+    static Map<String, Double> read(final Path PATH) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(PATH, StandardCharsets.UTF_8)) { properties.load(reader); }
+        Map<String, Double> values = new TreeMap<>();
+        for (String key : properties.stringPropertyNames()) { values.put(key, Double.parseDouble(properties.getProperty(key))); }
+        return values;
+    }
+
+    /** Sorted and without the date comment of Properties.store(), so the file can be diffed */
+    static void write(final Map<String, Double> VALUES, final Path PATH) throws IOException {
+        if (null != PATH.getParent()) { Files.createDirectories(PATH.getParent()); }
+        try (Writer writer = Files.newBufferedWriter(PATH, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, Double> entry : VALUES.entrySet()) {
+                writer.write(entry.getKey() + "=" + String.format(Locale.US, "%.2f", entry.getValue()) + System.lineSeparator());
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2018 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.ioswitch;
+
+import javafx.geometry.Insets;
+import javafx.scene.paint.Color;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Creates COUNT switches that are not part of a scene yet in one task on
+ * the FX thread, once with the constructor and once through the builder
+ * with the settings of the demo.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConstructionBenchmark {
+    private static final Insets PADDING = new Insets(2);
+
+    @Param({ "1", "1000" })
+    public int count;
+
+
+    @Setup public void setup() throws Exception { FxPlatform.startup(); }
+
+    @Benchmark public void constructor(final Blackhole BLACKHOLE) throws Exception {
+        FxPlatform.run(() -> {
+            for (int i = 0 ; i < count ; i++) { BLACKHOLE.consume(new IosSwitch()); }
+        });
+    }
+
+    @Benchmark public void builder(final Blackhole BLACKHOLE) throws Exception {
+        FxPlatform.run(() -> {
+            for (int i = 0 ; i < count ; i++) {
+                BLACKHOLE.consume(IosSwitchBuilder.create()
+                                                  .prefSize(76, 46)
+                                                  .selected(true)
+                                                  .selectedColor(Color.CORNFLOWERBLUE)
+                                                  .showOnOffText(true)
+                                                  .duration(200)
+                                                  .padding(PADDING)
+                                                  .build());
+            }
+        });
+    }
+}
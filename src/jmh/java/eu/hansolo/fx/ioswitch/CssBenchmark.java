@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2018 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.ioswitch;
+
+import javafx.scene.layout.FlowPane;
+import javafx.stage.Stage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Full CSS pass over COUNT showing switches. Changing the style of their
+ * parent makes all switches look up their styles again.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CssBenchmark {
+    @Param({ "1", "1000" })
+    public int       count;
+    private FlowPane pane;
+    private Stage    stage;
+    private boolean  red;
+
+
+    @Setup public void setup() throws Exception {
+        FxPlatform.startup();
+        FxPlatform.run(() -> {
+            pane = new FlowPane();
+            for (int i = 0 ; i < count ; i++) { pane.getChildren().add(new IosSwitch()); }
+            stage = FxPlatform.show(pane, 1200, 780);
+        });
+    }
+
+    @TearDown public void tearDown() throws Exception { FxPlatform.run(() -> stage.close()); }
+
+    @Benchmark public void applyCss() throws Exception {
+        red = !red;
+        FxPlatform.run(() -> {
+            pane.setStyle(red ? "-selected-color: red;" : "-selected-color: green;");
+            pane.applyCss();
+        });
+    }
+}
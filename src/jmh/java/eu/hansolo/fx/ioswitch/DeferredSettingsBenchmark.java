@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2018 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.ioswitch;
+
+import javafx.beans.property.Property;
+import javafx.beans.property.SimpleBooleanProperty;
+import javafx.beans.property.SimpleDoubleProperty;
+import javafx.beans.property.SimpleObjectProperty;
+import javafx.geometry.Dimension2D;
+import javafx.geometry.Insets;
+import javafx.scene.paint.Color;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Builds COUNT switches with the settings of the demo, which are kept until
+ * the switches are showing. The typed path is IosSwitchBuilder with
+ * SwitchSettings, the legacy path is the former map of Simple*Property
+ * objects that was copied from the builder into every switch. Besides the
+ * time, the gc profiler reports the allocated bytes (gc.alloc.rate.norm),
+ * the heap that the built switches hold after a full GC is printed after
+ * every iteration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class DeferredSettingsBenchmark {
+    private static final Insets      PADDING = new Insets(2);
+    private              IosSwitch[] switches;
+    private              Object[]    legacySettings;
+
+    @Param({ "10000" })
+    public int count;
+
+
+    @Setup public void setup() throws Exception { FxPlatform.startup(); }
+
+    @Setup(Level.Invocation) public void clear() {
+        switches       = null;
+        legacySettings = null;
+    }
+
+    @Benchmark public void typed(final Footprint FOOTPRINT) throws Exception {
+        FxPlatform.run(() -> {
+            IosSwitch[] built = new IosSwitch[count];
+            for (int i = 0 ; i < count ; i++) {
+                built[i] = IosSwitchBuilder.create()
+                                           .prefSize(76, 46)
+                                           .selected(true)
+                                           .selectedColor(Color.CORNFLOWERBLUE)
+                                           .showOnOffText(true)
+                                           .duration(200)
+                                           .padding(PADDING)
+                                           .build();
+            }
+            switches = built;
+        });
+    }
+
+    @Benchmark public void legacy(final Footprint FOOTPRINT) throws Exception {
+        FxPlatform.run(() -> {
+            IosSwitch[] built    = new IosSwitch[count];
+            Object[]    settings = new Object[count];
+            for (int i = 0 ; i < count ; i++) {
+                LegacyBuilder builder = new LegacyBuilder().prefSize(76, 46)
+                                                           .selected(true)
+                                                           .selectedColor(Color.CORNFLOWERBLUE)
+                                                           .showOnOffText(true)
+                                                           .duration(200)
+                                                           .padding(PADDING);
+                built[i]    = new IosSwitch();
+                settings[i] = builder.build();
+            }
+            switches       = built;
+            legacySettings = settings;
+        });
+    }
+
+    static long usedAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        long    used    = Long.MAX_VALUE;
+        // A single System.gc() doesn't always collect everything
+        for (int i = 0 ; i < 3 ; i++) {
+            System.gc();
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+
+
+    // ******************** Inner Classes *************************************
+    @State(Scope.Thread)
+    public static class Footprint {
+        private long before;
+        private long retained;
+
+        // The switches of the benchmark are only dropped in its next invocation setup
+        @Setup(Level.Invocation) public void before() { before = usedAfterGc(); }
+
+        @TearDown(Level.Invocation) public void after() { retained = usedAfterGc() - before; }
+
+        // Aux counters would be summed over all iterations, the output of the fork is shown next to the iteration
+        @TearDown(Level.Iteration) public void report() { System.out.printf(Locale.US, "retained %.2f MB ", retained / 1_048_576.0); }
+    }
+
+    /** The builder before SwitchSettings, every setting is a property object in a map */
+    private static final class LegacyBuilder {
+        private final Map<String, Property<?>> properties = new HashMap<>();
+
+        LegacyBuilder selected(final boolean SELECTED) {
+            properties.put("selected", new SimpleBooleanProperty(SELECTED));
+            return this;
+        }
+
+        LegacyBuilder selectedColor(final Color COLOR) {
+            properties.put("selectedColor", new SimpleObjectProperty<>(COLOR));
+            return this;
+        }
+
+        LegacyBuilder showOnOffText(final boolean SHOW) {
+            properties.put("showOnOffText", new SimpleBooleanProperty(SHOW));
+            return this;
+        }
+
+        LegacyBuilder duration(final double DURATION) {
+            properties.put("duration", new SimpleDoubleProperty(DURATION));
+            return this;
+        }
+
+        LegacyBuilder prefSize(final double WIDTH, final double HEIGHT) {
+            properties.put("prefSize", new SimpleObjectProperty<>(new Dimension2D(WIDTH, HEIGHT)));
+            return this;
+        }
+
+        LegacyBuilder padding(final Insets INSETS) {
+            properties.put("padding", new SimpleObjectProperty<>(INSETS));
+            return this;
+        }
+
+        /** The switch kept its own map that the settings were copied into */
+        Map<String, Property<?>> build() {
+            Map<String, Property<?>> settings = new HashMap<>();
+            settings.putAll(properties);
+            properties.clear();
+            return settings;
+        }
+    }
+}
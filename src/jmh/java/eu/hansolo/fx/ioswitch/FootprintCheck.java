@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2018 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.ioswitch;
+
+import javafx.application.Platform;
+import javafx.scene.Node;
+import javafx.scene.Parent;
+import javafx.scene.layout.FlowPane;
+import javafx.stage.Stage;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+
+/**
+ * Footprint check. Creates COUNT switches and reports the retained heap in
+ * bytes and the number of scene graph nodes per switch in four states:
+ * <ul>
+ *   <li>constructed: created but not part of a scene</li>
+ *   <li>shown: laid out and rendered</li>
+ *   <li>onOffText: shown with the on/off text</li>
+ *   <li>toggled: after the first animation</li>
+ * </ul>
+ * Viewport culling is off, so every switch is laid out and animated. A
+ * result that exceeds its baseline by more than the tolerance fails the run,
+ * the node count must not grow at all. Before the nodes were created on
+ * demand a constructed switch had 7 nodes and retained 13.8 kB, a shown
+ * switch retained 31.2 kB.
+ *
+ * <pre>
+ * ./gradlew footprintCheck
+ * ./gradlew footprintCheck --args="--update-baseline"
+ * </pre>
+ * Arguments: --count, --baseline, --results, --tolerance (0.1 = 10%) and
+ * --update-baseline.
+ */
+public final class FootprintCheck {
+    private static final String[]            STATES     = { "constructed", "shown", "onOffText", "toggled" };
+    // Absolute slack in bytes, the retained heap per switch varies a little from run to run
+    private static final double              BYTE_SLACK = 256;
+    private        final int                 count;
+    private        final Map<String, Double> results;
+
+
+    // ******************** Constructors **************************************
+    private FootprintCheck(final int COUNT) {
+        count   = COUNT;
+        results = new TreeMap<>();
+    }
+
+
+    // ******************** Methods *******************************************
+    public static void main(final String[] ARGS) throws Exception {
+        int     count          = 5_000;
+        Path    baseline       = Paths.get("src/jmh/resources/footprint-baseline.properties");
+        Path    resultFile     = Paths.get("build/reports/footprint/results.properties");
+        double  tolerance      = 0.1;
+        boolean updateBaseline = false;
+        for (int i = 0 ; i < ARGS.length ; i++) {
+            switch(ARGS[i]) {
+                case "--count"          : count = Integer.parseInt(ARGS[++i]); break;
+                case "--baseline"       : baseline = Paths.get(ARGS[++i]); break;
+                case "--results"        : resultFile = Paths.get(ARGS[++i]); break;
+                case "--tolerance"      : tolerance = Double.parseDouble(ARGS[++i]); break;
+                case "--update-baseline": updateBaseline = true; break;
+                default                 : throw new IllegalArgumentException("Unknown argument: " + ARGS[i]);
+            }
+        }
+        FxPlatform.startup();
+
+        FootprintCheck check = new FootprintCheck(count);
+        check.run();
+        BaselineFile.write(check.results, resultFile);
+        System.out.println("Results written to " + resultFile);
+
+        int failures = 0;
+        if (updateBaseline) {
+            BaselineFile.write(check.results, baseline);
+            System.out.println("Baseline written to " + baseline);
+        } else if (Files.exists(baseline)) {
+            // The node count has no tolerance
+            final double TOLERANCE = tolerance;
+            failures = BaselineFile.compare(check.results, BaselineFile.read(baseline), key -> key.endsWith(".nodes") ? 0 : TOLERANCE,
+                                            key -> key.endsWith(".nodes") ? 0 : BYTE_SLACK);
+        } else {
+            System.out.println("No baseline at " + baseline + ", run with --update-baseline to create it");
+        }
+        Platform.exit();
+        if (failures > 0) {
+            System.out.println(failures + " result(s) exceeded their baseline");
+            System.exit(1);
+        }
+        System.exit(0);
+    }
+
+    private void run() throws Exception {
+        final IosSwitch[] SWITCHES = new IosSwitch[count];
+        final long        EMPTY    = usedHeap();
+        FxPlatform.run(() -> {
+            for (int i = 0 ; i < count ; i++) {
+                SWITCHES[i] = new IosSwitch();
+                SWITCHES[i].setViewportCulling(false);
+            }
+        });
+        measure(STATES[0], EMPTY, SWITCHES);
+
+        final Stage STAGE = FxPlatform.call(() -> {
+            FlowPane pane = new FlowPane();
+            pane.getChildren().addAll(SWITCHES);
+            return FxPlatform.show(pane, 1200, 700);
+        });
+        FxPlatform.awaitPulses(5);
+        measure(STATES[1], EMPTY, SWITCHES);
+
+        FxPlatform.run(() -> { for (IosSwitch control : SWITCHES) { control.setShowOnOffText(true); } });
+        FxPlatform.awaitPulses(5);
+        measure(STATES[2], EMPTY, SWITCHES);
+
+        FxPlatform.run(() -> { for (IosSwitch control : SWITCHES) { control.setSelected(true); } });
+        do { FxPlatform.awaitPulses(5); } while (FxPlatform.call(IosSwitch::getActiveAnimations) > 0);
+        measure(STATES[3], EMPTY, SWITCHES);
+
+        FxPlatform.run(() -> {
+            STAGE.close();
+            for (IosSwitch control : SWITCHES) { control.dispose(); }
+        });
+    }
+
+    private void measure(final String STATE, final long EMPTY, final IosSwitch[] SWITCHES) throws Exception {
+        double bytes = (usedHeap() - EMPTY) / (double) count;
+        double nodes = FxPlatform.call(() -> {
+            long sum = 0;
+            for (IosSwitch control : SWITCHES) { sum += nodes(control); }
+            return sum / (double) count;
+        });
+        results.put(STATE + ".bytes", bytes);
+        results.put(STATE + ".nodes", nodes);
+        System.out.println(String.format(Locale.US, "%-12s %10.0f bytes %6.2f nodes per switch", STATE, bytes, nodes));
+    }
+
+    private static int nodes(final Node NODE) {
+        int nodes = 1;
+        if (NODE instanceof Parent) {
+            for (Node child : ((Parent) NODE).getChildrenUnmodifiable()) { nodes += nodes(child); }
+        }
+        return nodes;
+    }
+
+    private static long usedHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        System.gc();
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
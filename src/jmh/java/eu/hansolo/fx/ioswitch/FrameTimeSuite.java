@@ -0,0 +1,238 @@
+/*
+ * Copyright (c) 2018 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.ioswitch;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+import javafx.scene.layout.FlowPane;
+import javafx.stage.Stage;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.IntConsumer;
+
+
+/**
+ * Frame time regression suite. Builds a scene with 1k, 10k and 50k switches
+ * and drives scripted scenarios, every scenario changes all switches once per
+ * frame:
+ * <ul>
+ *   <li>toggleStorm: toggles all switches</li>
+ *   <li>resize: switches all switches between two sizes</li>
+ *   <li>darkFlip: switches all switches between dark and bright</li>
+ *   <li>toggleStormCulled: toggles all switches with viewport culling on</li>
+ * </ul>
+ * The scene is smaller than the switches need, so the first three scenarios
+ * turn viewport culling off and every switch is animated and laid out. In
+ * the culled scenario only the switches within the scene are animated, the
+ * others skip their animation.
+ * Pulses run at full speed, so the time between two pulses is the time the
+ * FX thread and the renderer needed for the frame, including CSS, layout and
+ * rendering. For every scenario the 50th, 90th and 99th percentile and the
+ * longest pulse in milliseconds are recorded, together with the growth of
+ * the used heap in MB. A result that exceeds its baseline by more than the
+ * tolerance fails the run.
+ *
+ * <pre>
+ * ./gradlew frameTimeSuite
+ * ./gradlew frameTimeSuite --args="--sizes 1000,10000 --update-baseline"
+ * </pre>
+ * Arguments: --sizes, --frames (measured frames per scenario), --baseline,
+ * --results, --tolerance (0.25 = 25%) and --update-baseline.
+ */
+public final class FrameTimeSuite {
+    private static final int[]               DEFAULT_SIZES = { 1_000, 10_000, 50_000 };
+    private static final String[]            CHECKED       = { "p50", "p90", "p99", "heapMb" };
+    private static final int                 WARMUP_FRAMES = 10;
+    // Absolute slack, so results close to zero don't fail on noise, the heap growth also depends on when the GC ran
+    private static final double              TIME_SLACK    = 1.0;
+    private static final double              HEAP_SLACK    = 16.0;
+    private static final double              SMALL_WIDTH   = SwitchGeometry.PREFERRED_WIDTH;
+    private static final double              SMALL_HEIGHT  = SwitchGeometry.PREFERRED_HEIGHT;
+    private static final double              LARGE_WIDTH   = SwitchGeometry.PREFERRED_WIDTH * 1.25;
+    private static final double              LARGE_HEIGHT  = SwitchGeometry.PREFERRED_HEIGHT * 1.25;
+    private        final int                 frames;
+    private        final Map<String, Double> results;
+
+
+    // ******************** Constructors **************************************
+    private FrameTimeSuite(final int FRAMES) {
+        frames  = FRAMES;
+        results = new TreeMap<>();
+    }
+
+
+    // ******************** Methods *******************************************
+    public static void main(final String[] ARGS) throws Exception {
+        int[]   sizes          = DEFAULT_SIZES;
+        int     frames         = 60;
+        Path    baseline       = Paths.get("src/jmh/resources/frame-time-baseline.properties");
+        Path    resultFile     = Paths.get("build/reports/frametime/results.properties");
+        double  tolerance      = 0.25;
+        boolean updateBaseline = false;
+        for (int i = 0 ; i < ARGS.length ; i++) {
+            switch(ARGS[i]) {
+                case "--sizes"          : sizes = Arrays.stream(ARGS[++i].split(",")).mapToInt(s -> Integer.parseInt(s.trim())).toArray(); break;
+                case "--frames"         : frames = Integer.parseInt(ARGS[++i]); break;
+                case "--baseline"       : baseline = Paths.get(ARGS[++i]); break;
+                case "--results"        : resultFile = Paths.get(ARGS[++i]); break;
+                case "--tolerance"      : tolerance = Double.parseDouble(ARGS[++i]); break;
+                case "--update-baseline": updateBaseline = true; break;
+                default                 : throw new IllegalArgumentException("Unknown argument: " + ARGS[i]);
+            }
+        }
+
+        // Must be set before the toolkit starts, otherwise pulses are capped at 60 per second
+        if (null == System.getProperty("javafx.animation.fullspeed")) { System.setProperty("javafx.animation.fullspeed", "true"); }
+        FxPlatform.startup();
+
+        FrameTimeSuite suite = new FrameTimeSuite(frames);
+        for (int size : sizes) { suite.run(size); }
+        BaselineFile.write(suite.results, resultFile);
+        System.out.println("Results written to " + resultFile);
+
+        int failures = 0;
+        if (updateBaseline) {
+            Map<String, Double> checked = new TreeMap<>();
+            suite.results.forEach((key, value) -> { if (isChecked(key)) { checked.put(key, value); } });
+            BaselineFile.write(checked, baseline);
+            System.out.println("Baseline written to " + baseline);
+        } else if (Files.exists(baseline)) {
+            final double TOLERANCE = tolerance;
+            failures = BaselineFile.compare(suite.results, BaselineFile.read(baseline), key -> TOLERANCE, key -> key.endsWith(".heapMb") ? HEAP_SLACK : TIME_SLACK);
+        } else {
+            System.out.println("No baseline at " + baseline + ", run with --update-baseline to create it");
+        }
+        Platform.exit();
+        if (failures > 0) {
+            System.out.println(failures + " result(s) exceeded their baseline");
+            System.exit(1);
+        }
+        System.exit(0);
+    }
+
+    private void run(final int SIZE) throws Exception {
+        final IosSwitch[] SWITCHES = new IosSwitch[SIZE];
+        final Stage       STAGE    = FxPlatform.call(() -> {
+            FlowPane pane = new FlowPane();
+            for (int i = 0 ; i < SIZE ; i++) {
+                SWITCHES[i] = new IosSwitch();
+                SWITCHES[i].setViewportCulling(false);
+                SWITCHES[i].setPrefSize(SMALL_WIDTH, SMALL_HEIGHT);
+                pane.getChildren().add(SWITCHES[i]);
+            }
+            return FxPlatform.show(pane, 1200, 700);
+        });
+        // First CSS and layout pass of the new scene
+        record(WARMUP_FRAMES, frame -> {});
+
+        scenario(SIZE, "toggleStorm", frame -> {
+            for (IosSwitch control : SWITCHES) { control.setSelected(!control.isSelected()); }
+        });
+        scenario(SIZE, "resize", frame -> {
+            double width  = 0 == frame % 2 ? LARGE_WIDTH : SMALL_WIDTH;
+            double height = 0 == frame % 2 ? LARGE_HEIGHT : SMALL_HEIGHT;
+            for (IosSwitch control : SWITCHES) { control.setPrefSize(width, height); }
+        });
+        scenario(SIZE, "darkFlip", frame -> {
+            for (IosSwitch control : SWITCHES) { control.setDark(!control.isDark()); }
+        });
+
+        FxPlatform.run(() -> { for (IosSwitch control : SWITCHES) { control.setViewportCulling(true); } });
+        scenario(SIZE, "toggleStormCulled", frame -> {
+            for (IosSwitch control : SWITCHES) { control.setSelected(!control.isSelected()); }
+        });
+
+        FxPlatform.run(() -> {
+            STAGE.close();
+            for (IosSwitch control : SWITCHES) { control.dispose(); }
+        });
+    }
+
+    private void scenario(final int SIZE, final String NAME, final IntConsumer ACTION) throws Exception {
+        final long   HEAP_BEFORE = usedHeap();
+        final long[] PULSES      = record(WARMUP_FRAMES + frames, ACTION);
+        final long   HEAP_AFTER  = usedHeap();
+
+        long[] measured = Arrays.copyOfRange(PULSES, WARMUP_FRAMES, PULSES.length);
+        Arrays.sort(measured);
+        String prefix = SIZE + "." + NAME + ".";
+        results.put(prefix + "p50", percentile(measured, 50));
+        results.put(prefix + "p90", percentile(measured, 90));
+        results.put(prefix + "p99", percentile(measured, 99));
+        results.put(prefix + "max", measured[measured.length - 1] / 1e6);
+        results.put(prefix + "heapMb", (HEAP_AFTER - HEAP_BEFORE) / (1024.0 * 1024.0));
+        System.out.println(String.format(Locale.US, "%6d %-17s p50 %8.2f ms  p90 %8.2f ms  p99 %8.2f ms  max %8.2f ms  heap %+8.2f MB", SIZE, NAME,
+                                         results.get(prefix + "p50"), results.get(prefix + "p90"), results.get(prefix + "p99"),
+                                         results.get(prefix + "max"), results.get(prefix + "heapMb")));
+    }
+
+    /**
+     * Runs the action on FRAMES consecutive pulses and returns the time from
+     * each pulse to the next one, that includes the CSS, layout and
+     * rendering of the changes the action made.
+     */
+    private static long[] record(final int FRAMES, final IntConsumer ACTION) throws Exception {
+        final long[]         PULSES = new long[FRAMES];
+        final CountDownLatch DONE   = new CountDownLatch(1);
+        FxPlatform.run(() -> new AnimationTimer() {
+            private int  frame = -1;
+            private long last;
+
+            @Override public void handle(final long now) {
+                long time = System.nanoTime();
+                if (frame >= 0) { PULSES[frame] = time - last; }
+                if (++frame == FRAMES) {
+                    stop();
+                    DONE.countDown();
+                    return;
+                }
+                ACTION.accept(frame);
+                last = time;
+            }
+        }.start());
+        DONE.await();
+        return PULSES;
+    }
+
+    private static double percentile(final long[] SORTED, final int PERCENT) {
+        int index = (int) Math.ceil(PERCENT / 100.0 * SORTED.length) - 1;
+        return SORTED[Math.max(0, Math.min(SORTED.length - 1, index))] / 1e6;
+    }
+
+    private static long usedHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        System.gc();
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    private static boolean isChecked(final String KEY) {
+        for (String metric : CHECKED) {
+            if (KEY.endsWith("." + metric)) { return true; }
+        }
+        return false;
+    }
+}
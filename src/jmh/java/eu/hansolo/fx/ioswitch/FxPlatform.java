@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2018 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.ioswitch;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.stage.Stage;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+
+/**
+ * Starts the FX toolkit once per benchmark fork and runs code on the FX
+ * thread. Benchmarks run headless when started with the Monocle system
+ * properties that are set in build.gradle.
+ */
+final class FxPlatform {
+    private static boolean started;
+
+
+    // ******************** Constructors **************************************
+    private FxPlatform() {}
+
+
+    // ******************** Methods *******************************************
+    static synchronized void startup() throws Exception {
+        if (started) { return; }
+        FutureTask<Void> task = new FutureTask<>(() -> null);
+        com.sun.javafx.application.PlatformImpl.startup(task);
+        task.get();
+        Platform.setImplicitExit(false);
+        started = true;
+    }
+
+    static void run(final Runnable RUNNABLE) throws Exception {
+        call(() -> {
+            RUNNABLE.run();
+            return null;
+        });
+    }
+
+    static <T> T call(final Callable<T> CALLABLE) throws Exception {
+        if (Platform.isFxApplicationThread()) { return CALLABLE.call(); }
+        FutureTask<T> task = new FutureTask<>(CALLABLE);
+        Platform.runLater(task);
+        try {
+            return task.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) { throw (Exception) e.getCause(); }
+            throw e;
+        }
+    }
+
+    /** Waits until the FX thread ran the given number of pulses, must not be called on the FX thread */
+    static void awaitPulses(final int PULSES) throws Exception {
+        final CountDownLatch DONE = new CountDownLatch(1);
+        run(() -> new AnimationTimer() {
+            private int pulses;
+
+            @Override public void handle(final long now) {
+                if (++pulses < PULSES) { return; }
+                stop();
+                DONE.countDown();
+            }
+        }.start());
+        DONE.await();
+    }
+
+    /** Must be called on the FX thread */
+    static Stage show(final Parent ROOT, final double WIDTH, final double HEIGHT) {
+        Stage stage = new Stage();
+        stage.setScene(new Scene(ROOT, WIDTH, HEIGHT));
+        stage.show();
+        return stage;
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2018 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.ioswitch;
+
+import javafx.scene.image.WritableImage;
+import javafx.scene.layout.FlowPane;
+import javafx.stage.Stage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Renders 1000 switches with the knob shadow of the given mode, once at rest
+ * and once with every knob moved since the last frame. Frames are rendered
+ * with snapshot() into the same image, so the time is the time Prism needs
+ * for the frame on the pipeline the benchmark runs on. Before every moving
+ * frame all switches are toggled and two pulses are awaited outside of the
+ * measurement, so the knobs are in the middle of their animation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KnobShadowBenchmark {
+    @Param({ "EFFECT", "ATLAS" })
+    public IosSwitch.KnobShadow shadow;
+    private IosSwitch[]         switches;
+    private FlowPane            pane;
+    private WritableImage       image;
+    private Stage               stage;
+
+
+    @Setup public void setup() throws Exception {
+        FxPlatform.startup();
+        FxPlatform.run(() -> {
+            pane     = new FlowPane();
+            switches = new IosSwitch[1000];
+            for (int i = 0 ; i < switches.length ; i++) {
+                switches[i] = new IosSwitch();
+                switches[i].setKnobShadow(shadow);
+                // Culled switches would skip their animation
+                switches[i].setViewportCulling(false);
+                switches[i].setSelected(i % 3 == 0);
+                pane.getChildren().add(switches[i]);
+            }
+            image = new WritableImage(1200, 700);
+            stage = FxPlatform.show(pane, 1200, 700);
+        });
+    }
+
+    @TearDown public void tearDown() throws Exception { FxPlatform.run(() -> stage.close()); }
+
+    @Benchmark public WritableImage idleFrame() throws Exception { return FxPlatform.call(() -> pane.snapshot(null, image)); }
+
+    @Benchmark public WritableImage movingKnobs(final Moving MOVING) throws Exception { return FxPlatform.call(() -> pane.snapshot(null, image)); }
+
+
+    @State(Scope.Thread)
+    public static class Moving {
+        /** A running animation is reversed, so the knobs never come to rest */
+        @Setup(Level.Invocation) public void toggle(final KnobShadowBenchmark BENCHMARK) throws Exception {
+            FxPlatform.run(() -> {
+                for (IosSwitch control : BENCHMARK.switches) { control.setSelected(!control.isSelected()); }
+            });
+            FxPlatform.awaitPulses(2);
+        }
+    }
+}
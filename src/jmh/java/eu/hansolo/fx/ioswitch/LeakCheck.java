@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2018 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.ioswitch;
+
+import javafx.application.Platform;
+import javafx.scene.layout.FlowPane;
+import javafx.scene.layout.VBox;
+import javafx.stage.Stage;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+
+/**
+ * Heap check for dispose(). Every round creates COUNT switches, half of
+ * them below an invisible parent, and leaves them with all registrations
+ * that outlive a pulse:
+ * <ul>
+ *   <li>SwitchViewport: hidden switches that skipped their animation, the ones below the invisible parent are parked</li>
+ *   <li>SwitchUpdateQueue: a state requested by setSelectedLater()</li>
+ *   <li>SwitchSnapshotCache: a pending refresh of the idle snapshot</li>
+ *   <li>SwitchBank and IosSwitchGroup: the binding and the membership, the
+ *       bank and the group live for the whole run</li>
+ * </ul>
+ * Then all switches are removed from the scene and disposed within the same
+ * pulse. After a few pulses and a full GC no switch of the round may still
+ * be reachable, otherwise the run fails. The used heap after every round
+ * is printed as well, it should stay flat.
+ *
+ * <pre>
+ * ./gradlew leakCheck
+ * ./gradlew leakCheck --args="--count 1000 --rounds 20"
+ * </pre>
+ */
+public final class LeakCheck {
+    private final int            count;
+    private final SwitchBank     bank;
+    private final IosSwitchGroup group;
+
+
+    // ******************** Constructors **************************************
+    private LeakCheck(final int COUNT) {
+        count = COUNT;
+        bank  = new SwitchBank(COUNT);
+        group = IosSwitchGroup.atMost(COUNT);
+    }
+
+
+    // ******************** Methods *******************************************
+    public static void main(final String[] ARGS) throws Exception {
+        int count  = 10_000;
+        int rounds = 5;
+        for (int i = 0 ; i < ARGS.length ; i++) {
+            switch(ARGS[i]) {
+                case "--count" : count = Integer.parseInt(ARGS[++i]); break;
+                case "--rounds": rounds = Integer.parseInt(ARGS[++i]); break;
+                default        : throw new IllegalArgumentException("Unknown argument: " + ARGS[i]);
+            }
+        }
+        FxPlatform.startup();
+
+        LeakCheck check    = new LeakCheck(count);
+        int       retained = 0;
+        for (int round = 1 ; round <= rounds ; round++) { retained += check.run(round); }
+        Platform.exit();
+        if (retained > 0) {
+            System.out.println(retained + " disposed switch(es) are still reachable");
+            System.exit(1);
+        }
+        System.exit(0);
+    }
+
+    /** Returns the number of switches of the round that are still reachable */
+    private int run(final int ROUND) throws Exception {
+        final IosSwitch[] SWITCHES = new IosSwitch[count];
+        final FlowPane    SHOWN    = new FlowPane();
+        final FlowPane    HIDDEN   = new FlowPane();
+        final Stage       STAGE    = FxPlatform.call(() -> {
+            for (int i = 0 ; i < count ; i++) {
+                SWITCHES[i] = new IosSwitch();
+                SWITCHES[i].setViewportCulling(true);
+                SWITCHES[i].bindToBank(bank, i);
+                group.add(SWITCHES[i]);
+                (i % 2 == 0 ? SHOWN : HIDDEN).getChildren().add(SWITCHES[i]);
+            }
+            HIDDEN.setVisible(false);
+            return FxPlatform.show(new VBox(SHOWN, HIDDEN), 1200, 700);
+        });
+        FxPlatform.awaitPulses(5);
+
+        // Switches that are not visible skip their animation and are tracked by SwitchViewport
+        FxPlatform.run(() -> { for (IosSwitch control : SWITCHES) { control.setSelected(true); } });
+        FxPlatform.awaitPulses(2);
+        // A move makes SwitchViewport check them on the next pulse, the ones below HIDDEN are parked
+        FxPlatform.run(() -> HIDDEN.setTranslateY(1));
+        FxPlatform.awaitPulses(5);
+
+        final List<WeakReference<IosSwitch>> REFERENCES = new ArrayList<>(count);
+        FxPlatform.run(() -> {
+            for (IosSwitch control : SWITCHES) {
+                control.setSelectedLater(false);
+                control.setIdleCaching(true);
+                REFERENCES.add(new WeakReference<>(control));
+            }
+            SHOWN.getChildren().clear();
+            HIDDEN.getChildren().clear();
+            for (IosSwitch control : SWITCHES) { control.dispose(); }
+        });
+        Arrays.fill(SWITCHES, null);
+        // A window that is closed in the same pulse keeps the removed nodes, that is not what is checked here
+        FxPlatform.awaitPulses(5);
+        FxPlatform.run(STAGE::close);
+        FxPlatform.awaitPulses(5);
+
+        long used      = DeferredSettingsBenchmark.usedAfterGc();
+        int  reachable = 0;
+        for (WeakReference<IosSwitch> reference : REFERENCES) { if (null != reference.get()) { reachable++; } }
+        System.out.println(String.format(Locale.US, "round %2d: %6d of %d switches reachable, hidden %d, group %d, heap %.1f MB", ROUND, reachable, count,
+                                         IosSwitch.getHiddenSwitches(), group.getSwitches().size(), used / 1_048_576.0));
+        return reachable;
+    }
+}
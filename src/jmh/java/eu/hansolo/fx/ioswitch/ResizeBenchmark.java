@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2018 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.ioswitch;
+
+import javafx.scene.layout.Pane;
+import javafx.stage.Stage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Resizes COUNT showing switches between two sizes in one task on the FX
+ * thread and runs the layout pass of the same task. resize() only marks the
+ * geometry as dirty, the layout pass recomputes the geometry of every switch
+ * and moves its shapes. The geometry alone is measured by geometry().
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResizeBenchmark {
+    @Param({ "1", "1000" })
+    public int          count;
+    private IosSwitch[] switches;
+    private Pane        pane;
+    private Stage       stage;
+    private boolean     large;
+
+
+    @Setup public void setup() throws Exception {
+        FxPlatform.startup();
+        FxPlatform.run(() -> {
+            pane     = new Pane();
+            switches = new IosSwitch[count];
+            for (int i = 0 ; i < count ; i++) {
+                switches[i] = new IosSwitch();
+                switches[i].setManaged(false);
+                pane.getChildren().add(switches[i]);
+            }
+            stage = FxPlatform.show(pane, 1200, 780);
+        });
+    }
+
+    @TearDown public void tearDown() throws Exception { FxPlatform.run(() -> stage.close()); }
+
+    @Benchmark public void resize() throws Exception {
+        large = !large;
+        final double WIDTH  = large ? 76 : 38;
+        final double HEIGHT = large ? 46 : 23;
+        FxPlatform.run(() -> {
+            for (IosSwitch control : switches) { control.resize(WIDTH, HEIGHT); }
+            pane.layout();
+        });
+    }
+
+    @Benchmark public Object geometry() {
+        large = !large;
+        return SwitchGeometry.fit(large ? 76 : 38, large ? 46 : 23);
+    }
+}
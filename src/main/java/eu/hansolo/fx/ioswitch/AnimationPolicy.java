@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2018 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.ioswitch;
+
+/**
+ * Decides how much animation work a switch does when its state changes.
+ * <ul>
+ *   <li>ALWAYS animates every change (default)</li>
+ *   <li>SNAP_ABOVE_RATE jumps straight to the new state while the switch
+ *       changes more often than the given number of times per second</li>
+ *   <li>CAP_FRAME_RATE animates every change but updates the switch at most
+ *       the given number of times per second</li>
+ *   <li>SPRING moves every visual property with a critically damped spring
+ *       that settles within the duration of the switch. A change while the
+ *       switch moves only retargets the springs, so the switch continues
+ *       from its current position and velocity instead of restarting</li>
+ * </ul>
+ * The policy can be set per switch or globally with setDefault().
+ */
+public final class AnimationPolicy {
+    public enum Mode { ALWAYS, SNAP_ABOVE_RATE, CAP_FRAME_RATE, SPRING }
+
+    public  static final    AnimationPolicy ALWAYS        = new AnimationPolicy(Mode.ALWAYS, 0);
+    public  static final    AnimationPolicy SPRING        = new AnimationPolicy(Mode.SPRING, 0);
+            static final    double          RATE_WINDOW   = 500_000_000;
+    private static volatile AnimationPolicy defaultPolicy = ALWAYS;
+    private        final    Mode            mode;
+    private        final    double          limit;
+    private        final    long            frameInterval;
+
+
+    // ******************** Constructors **************************************
+    private AnimationPolicy(final Mode MODE, final double LIMIT) {
+        mode          = MODE;
+        limit         = LIMIT;
+        frameInterval = Mode.CAP_FRAME_RATE == MODE ? (long) (1_000_000_000 / LIMIT) : 0;
+    }
+
+
+    // ******************** Methods *******************************************
+    /** Snap to the new state while the switch changes more than UPDATES_PER_SECOND times per second */
+    public static AnimationPolicy snapAbove(final double UPDATES_PER_SECOND) {
+        if (UPDATES_PER_SECOND <= 0) { throw new IllegalArgumentException("Update rate must be positive"); }
+        return new AnimationPolicy(Mode.SNAP_ABOVE_RATE, UPDATES_PER_SECOND);
+    }
+
+    /** Animate every change with at most FRAMES_PER_SECOND updates per second */
+    public static AnimationPolicy capFrameRate(final double FRAMES_PER_SECOND) {
+        if (FRAMES_PER_SECOND <= 0) { throw new IllegalArgumentException("Frame rate must be positive"); }
+        return new AnimationPolicy(Mode.CAP_FRAME_RATE, FRAMES_PER_SECOND);
+    }
+
+    public static AnimationPolicy getDefault() { return defaultPolicy; }
+    /** Used by all switches that have no policy of their own */
+    public static void setDefault(final AnimationPolicy POLICY) { defaultPolicy = null == POLICY ? ALWAYS : POLICY; }
+
+    public Mode getMode() { return mode; }
+
+    /** Returns the update rate for SNAP_ABOVE_RATE or the frame rate for CAP_FRAME_RATE */
+    public double getLimit() { return limit; }
+
+    /** Minimum time between two animation frames in ns, 0 if not capped */
+    long getFrameInterval() { return frameInterval; }
+
+    boolean snaps(final double UPDATE_RATE) { return Mode.SNAP_ABOVE_RATE == mode && UPDATE_RATE > limit; }
+
+    boolean isSpring() { return Mode.SPRING == mode; }
+
+    @Override public String toString() { return Mode.ALWAYS == mode || Mode.SPRING == mode ? mode.name() : mode.name() + "(" + limit + ")"; }
+}
@@ -0,0 +1,375 @@
+/*
+ * Copyright (c) 2018 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.ioswitch;
+
+import javafx.beans.property.BooleanProperty;
+import javafx.beans.property.BooleanPropertyBase;
+import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.DoublePropertyBase;
+import javafx.beans.property.ObjectProperty;
+import javafx.css.CssMetaData;
+import javafx.css.PseudoClass;
+import javafx.css.Styleable;
+import javafx.css.StyleableProperty;
+import javafx.css.StyleablePropertyFactory;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.layout.Region;
+import javafx.scene.paint.Color;
+
+import java.util.List;
+
+
+/**
+ * Same switch as IosSwitch but drawn onto a single Canvas, which reduces
+ * the scene graph from up to 7 nodes (Region, 5 shapes and the knob shadow)
+ * to 2 nodes (Region and Canvas) per switch. Useful for screens with thousands of switches.
+ */
+public class CanvasIosSwitch extends Region {
+    public  static final double                                    MIN_DURATION      = IosSwitch.MIN_DURATION;
+    public  static final double                                    MAX_DURATION      = IosSwitch.MAX_DURATION;
+    private static final double                                    PREFERRED_WIDTH   = SwitchGeometry.PREFERRED_WIDTH;
+    private static final double                                    PREFERRED_HEIGHT  = SwitchGeometry.PREFERRED_HEIGHT;
+    private static final double                                    MINIMUM_WIDTH     = 20;
+    private static final double                                    MINIMUM_HEIGHT    = 12;
+    private static final double                                    MAXIMUM_WIDTH     = 1024;
+    private static final double                                    MAXIMUM_HEIGHT    = 1024;
+    private static final StyleablePropertyFactory<CanvasIosSwitch> FACTORY           = new StyleablePropertyFactory<>(Region.getClassCssMetaData());
+    private static final PseudoClass                               DARK_PSEUDO_CLASS = PseudoClass.getPseudoClass("dark");
+    private        final StyleableProperty<Color>                  selectedColor;
+    private        final StyleableProperty<Color>                  backgroundColor;
+    private        final StyleableProperty<Color>                  knobColor;
+    private        final StyleableProperty<Color>                  darkMainColor;
+    private              BooleanProperty                           dark;
+    private              SwitchGeometry                            geometry;
+    private              boolean                                   geometryDirty;
+    private              Canvas                                    canvas;
+    private              GraphicsContext                           ctx;
+    private              SwitchAnimation                           animation;
+    private              Runnable                                  longPressAction;
+    private              boolean                                   _selected;
+    private              BooleanProperty                           selected;
+    private              double                                    _duration;
+    private              DoubleProperty                            duration;
+    private              boolean                                   _showOnOffText;
+    private              BooleanProperty                           showOnOffText;
+    private              ToggleEventStream                         toggleEventStream;
+    private              ToggleEventStream.Cause                   toggleCause;
+    private              int                                       auditId;
+    private              boolean                                   auditIdSet;
+    private              boolean                                   longPressFired;
+
+
+    // ******************** Constructors **************************************
+    public CanvasIosSwitch() {
+        _selected       = false;
+        longPressAction = this::longPressed;
+        selectedColor   = FACTORY.createStyleableColorProperty(this, "selectedColor", "-selected-color", s -> s.selectedColor, SwitchPainter.SELECTED_COLOR);
+        backgroundColor = FACTORY.createStyleableColorProperty(this, "backgroundColor", "-background-color", s -> s.backgroundColor, SwitchPainter.BACKGROUND_COLOR);
+        knobColor       = FACTORY.createStyleableColorProperty(this, "knobColor", "-knob-color", s -> s.knobColor, SwitchPainter.KNOB_COLOR);
+        darkMainColor   = FACTORY.createStyleableColorProperty(this, "darkMainColor", "-dark-main-color", s -> s.darkMainColor, SwitchPainter.DARK_MAIN_COLOR);
+        _duration       = 250;
+        _showOnOffText  = false;
+        toggleCause     = ToggleEventStream.Cause.PROGRAMMATIC;
+        animation       = new SwitchAnimation(_selected, (a, finished) -> redraw());
+        initGraphics();
+        registerListeners();
+    }
+
+
+    // ******************** Initialization ************************************
+    private void initGraphics() {
+        if (Double.compare(getPrefWidth(), 0.0) <= 0 || Double.compare(getPrefHeight(), 0.0) <= 0 || Double.compare(getWidth(), 0.0) <= 0 ||
+            Double.compare(getHeight(), 0.0) <= 0) {
+            if (getPrefWidth() > 0 && getPrefHeight() > 0) {
+                setPrefSize(getPrefWidth(), getPrefHeight());
+            } else {
+                setPrefSize(PREFERRED_WIDTH, PREFERRED_HEIGHT);
+            }
+        }
+
+        getStyleClass().add("ios-switch");
+
+        canvas = new Canvas(PREFERRED_WIDTH, PREFERRED_HEIGHT);
+        ctx    = canvas.getGraphicsContext2D();
+
+        getChildren().setAll(canvas);
+    }
+
+    private void registerListeners() {
+        widthProperty().addListener(o -> markGeometryDirty());
+        heightProperty().addListener(o -> markGeometryDirty());
+        disabledProperty().addListener(o -> setOpacity(isDisabled() ? 0.5 : 1.0));
+        ((ObjectProperty<Color>) selectedColor).addListener(o -> redraw());
+        ((ObjectProperty<Color>) backgroundColor).addListener(o -> redraw());
+        ((ObjectProperty<Color>) knobColor).addListener(o -> redraw());
+        ((ObjectProperty<Color>) darkMainColor).addListener(o -> redraw());
+        canvas.addEventHandler(MouseEvent.MOUSE_CLICKED, e -> toggle(longPressFired ? ToggleEventStream.Cause.LONG_PRESS : ToggleEventStream.Cause.CLICK));
+        canvas.addEventHandler(MouseEvent.MOUSE_PRESSED, e -> {
+            longPressFired = false;
+            LongPressDetector.INSTANCE.press(longPressAction);
+        });
+        canvas.addEventHandler(MouseEvent.MOUSE_RELEASED, e -> LongPressDetector.INSTANCE.cancel(longPressAction));
+    }
+
+
+    // ******************** Methods *******************************************
+    @Override protected double computeMinWidth(final double HEIGHT) { return MINIMUM_WIDTH; }
+    @Override protected double computeMinHeight(final double WIDTH) { return MINIMUM_HEIGHT; }
+    @Override protected double computeMaxWidth(final double HEIGHT) { return MAXIMUM_WIDTH; }
+    @Override protected double computeMaxHeight(final double WIDTH) { return MAXIMUM_HEIGHT; }
+
+    public boolean isSelected() { return null == selected ? _selected : selected.get(); }
+    public void setSelected(final boolean SELECTED) {
+        LongPressDetector.INSTANCE.cancel(longPressAction);
+        if (null == selected) {
+            if (_selected != SELECTED) { publish(SELECTED); }
+            _selected = SELECTED;
+            if (_selected) {
+                animateToSelect();
+            } else {
+                animateToDeselect();
+            }
+        } else {
+            selected.set(SELECTED);
+        }
+    }
+    public BooleanProperty selectedProperty() {
+        if (null == selected) {
+            selected = new BooleanPropertyBase(_selected) {
+                @Override protected void invalidated() {
+                    publish(get());
+                    if (get()) {
+                        animateToSelect();
+                    } else {
+                        animateToDeselect();
+                    }
+                }
+                @Override public Object getBean() { return CanvasIosSwitch.this; }
+                @Override public String getName() { return "selected"; }
+            };
+        }
+        return selected;
+    }
+
+    public Color getSelectedColor() { return selectedColor.getValue(); }
+    public void setSelectedColor(final Color COLOR) { selectedColor.setValue(COLOR); }
+    public ObjectProperty<Color> selectedColorProperty() { return (ObjectProperty<Color>) selectedColor; }
+
+    public Color getBackgroundColor() { return backgroundColor.getValue(); }
+    public void setBackgroundColor(final Color COLOR) { backgroundColor.setValue(COLOR); }
+    public ObjectProperty<Color> backgroundColorProperty() { return (ObjectProperty<Color>) backgroundColor; }
+
+    public Color getKnobColor() { return knobColor.getValue(); }
+    public void setKnobColor(final Color COLOR) { knobColor.setValue(COLOR); }
+    public ObjectProperty<Color> knobColorProperty() { return (ObjectProperty<Color>) knobColor; }
+
+    public Color getDarkMainColor() { return darkMainColor.getValue(); }
+    public void setDarkMainColor(final Color COLOR) { darkMainColor.setValue(COLOR); }
+    public ObjectProperty<Color> darkMainColorProperty() { return (ObjectProperty<Color>) darkMainColor; }
+
+    public final boolean isDark() {
+        return null == dark ? false : dark.get();
+    }
+    public final void setDark(final boolean DARK) { darkProperty().set(DARK); }
+    public final BooleanProperty darkProperty() {
+        if (null == dark) {
+            dark = new BooleanPropertyBase() {
+                @Override protected void invalidated() {
+                    pseudoClassStateChanged(DARK_PSEUDO_CLASS, get());
+                    redraw();
+                }
+                @Override public Object getBean() { return CanvasIosSwitch.this; }
+                @Override public String getName() { return "dark"; }
+            };
+        }
+        return dark;
+    }
+
+    public double getDuration() { return null == duration ? _duration : duration.get(); }
+    public void setDuration(final double DURATION) {
+        if (null == duration) {
+            _duration = clamp(MIN_DURATION, MAX_DURATION, DURATION);
+        } else {
+            duration.set(DURATION);
+        }
+    }
+    public DoubleProperty durationProperty() {
+        if (null == duration) {
+            duration = new DoublePropertyBase(_duration) {
+                @Override protected void invalidated() { set(clamp(MIN_DURATION, MAX_DURATION, get())); }
+                @Override public Object getBean() { return CanvasIosSwitch.this; }
+                @Override public String getName() { return "duration"; }
+            };
+        }
+        return duration;
+    }
+
+    /** Returns the policy of this switch or null if it uses AnimationPolicy.getDefault() */
+    public AnimationPolicy getAnimationPolicy() { return animation.policy; }
+    public void setAnimationPolicy(final AnimationPolicy POLICY) { animation.policy = POLICY; }
+
+    public boolean getShowOnOffText() { return null == showOnOffText ? _showOnOffText : showOnOffText.get(); }
+    public void setShowOnOffText(final boolean SHOW) {
+        if (null == showOnOffText) {
+            _showOnOffText = SHOW;
+            redraw();
+        } else {
+            showOnOffText.set(SHOW);
+        }
+    }
+    public BooleanProperty showOnOffTextProperty() {
+        if (null == showOnOffText) {
+            showOnOffText = new BooleanPropertyBase(_showOnOffText) {
+                @Override protected void invalidated() { redraw(); }
+                @Override public Object getBean() { return CanvasIosSwitch.this; }
+                @Override public String getName() { return "showOnOffText"; }
+            };
+        }
+        return showOnOffText;
+    }
+
+    /** Returns the stream of this switch or null if it uses ToggleEventStream.getDefault() */
+    public ToggleEventStream getToggleEventStream() { return toggleEventStream; }
+    /** Every change of the selected state is written to the given stream */
+    public void setToggleEventStream(final ToggleEventStream STREAM) { toggleEventStream = STREAM; }
+
+    /** Returns the id of this switch in the toggle event stream, System.identityHashCode() as long as no id was set */
+    public int getAuditId() { return auditIdSet ? auditId : System.identityHashCode(this); }
+    public void setAuditId(final int ID) {
+        auditId    = ID;
+        auditIdSet = true;
+    }
+
+    /** Stops the running animation and a pending long press, the switch should not be used afterwards */
+    public void dispose() {
+        animation.stop();
+        LongPressDetector.INSTANCE.cancel(longPressAction);
+    }
+
+    private void toggle(final ToggleEventStream.Cause CAUSE) {
+        toggleCause = CAUSE;
+        try {
+            setSelected(!isSelected());
+        } finally {
+            toggleCause = ToggleEventStream.Cause.PROGRAMMATIC;
+        }
+    }
+
+    private void publish(final boolean SELECTED) {
+        ToggleEventStream stream = null != toggleEventStream ? toggleEventStream : ToggleEventStream.getDefault();
+        if (null != stream) { stream.publish(getAuditId(), SELECTED, toggleCause); }
+    }
+
+    private void longPressed() {
+        longPressFired = true;
+        if (isSelected()) {
+            animateToPreDeselect();
+        } else {
+            animateToPreSelect();
+        }
+    }
+
+    private void animateToPreSelect() {
+        animation.preSelect(isDark());
+        animation.play();
+    }
+    private void animateToPreDeselect() {
+        animation.preDeselect();
+        animation.play();
+    }
+
+    private void animateToSelect() {
+        if (SwitchMetrics.ENABLED) { SwitchMetrics.toggled(); }
+        if (animation.stateChanged()) {
+            animation.snap(true);
+            redraw();
+            return;
+        }
+        animation.select(getDuration());
+        animation.play();
+    }
+    private void animateToDeselect() {
+        if (SwitchMetrics.ENABLED) { SwitchMetrics.toggled(); }
+        if (animation.stateChanged()) {
+            animation.snap(false);
+            redraw();
+            return;
+        }
+        animation.deselect(getDuration());
+        animation.play();
+    }
+
+    private double clamp(final double MIN, final double MAX, final double VALUE) {
+        if (VALUE < MIN) { return MIN; }
+        if (VALUE > MAX) { return MAX; }
+        return VALUE;
+    }
+
+
+    // ******************** Resizing ******************************************
+    @Override protected void layoutChildren() {
+        if (geometryDirty) {
+            geometryDirty = false;
+            resize();
+        }
+        super.layoutChildren();
+    }
+
+    /** Width and height usually change together, the canvas is resized once in the next layout pass */
+    private void markGeometryDirty() {
+        if (geometryDirty) { return; }
+        geometryDirty = true;
+        requestLayout();
+    }
+
+    private void resize() {
+        double width  = getWidth() - getInsets().getLeft() - getInsets().getRight();
+        double height = getHeight() - getInsets().getTop() - getInsets().getBottom();
+
+        geometry = SwitchGeometry.fit(width, height);
+        if (null == geometry) { return; }
+
+        // Clear the old content before resizing, otherwise it survives outside of the new bounds
+        ctx.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+
+        // Leave room for the knob shadow around the switch, the painter is moved by the same padding
+        double padding = geometry.shadowRadius;
+        canvas.setWidth(geometry.width + 2 * padding);
+        canvas.setHeight(geometry.height + 2 * padding + geometry.shadowOffsetY);
+        canvas.relocate((getWidth() - geometry.width) * 0.5 - padding, (getHeight() - geometry.height) * 0.5 - padding);
+
+        redraw();
+    }
+
+    private void redraw() {
+        if (null == geometry) { return; }
+        ctx.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+        SwitchPainter.paint(ctx, geometry, geometry.shadowRadius, geometry.shadowRadius, animation.values, isDark(), getShowOnOffText(),
+                            getBackgroundColor(), getSelectedColor(), getKnobColor(), getDarkMainColor());
+    }
+
+
+    // ******************** Style related *************************************
+    @Override public String getUserAgentStylesheet() {
+        return IosSwitch.class.getResource("ios-switch.css").toExternalForm();
+    }
+
+    public static List<CssMetaData<? extends Styleable, ?>> getClassCssMetaData() { return FACTORY.getCssMetaData(); }
+    @Override public List<CssMetaData<? extends Styleable, ?>> getCssMetaData() { return FACTORY.getCssMetaData(); }
+}
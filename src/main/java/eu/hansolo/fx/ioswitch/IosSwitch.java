@@ -16,43 +16,42 @@
 
 package eu.hansolo.fx.ioswitch;
 
-import javafx.animation.AnimationTimer;
-import javafx.animation.Interpolator;
-import javafx.animation.KeyFrame;
-import javafx.animation.KeyValue;
-import javafx.animation.Timeline;
+import eu.hansolo.fx.ioswitch.SwitchSettings.Key;
+import javafx.application.ConditionalFeature;
+import javafx.application.Platform;
 import javafx.beans.DefaultProperty;
-import javafx.beans.binding.Bindings;
-import javafx.beans.binding.BooleanBinding;
+import javafx.beans.InvalidationListener;
+import javafx.beans.WeakInvalidationListener;
 import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.BooleanPropertyBase;
 import javafx.beans.property.DoubleProperty;
 import javafx.beans.property.DoublePropertyBase;
 import javafx.beans.property.ObjectProperty;
-import javafx.beans.property.Property;
-import javafx.beans.property.SimpleBooleanProperty;
-import javafx.beans.property.SimpleDoubleProperty;
-import javafx.beans.property.SimpleObjectProperty;
 import javafx.collections.ObservableList;
 import javafx.css.CssMetaData;
 import javafx.css.PseudoClass;
 import javafx.css.Styleable;
 import javafx.css.StyleableProperty;
 import javafx.css.StyleablePropertyFactory;
-import javafx.geometry.Dimension2D;
-import javafx.geometry.Insets;
+import javafx.geometry.Bounds;
+import javafx.geometry.Rectangle2D;
 import javafx.scene.Node;
+import javafx.scene.Scene;
+import javafx.scene.SnapshotParameters;
 import javafx.scene.effect.BlurType;
 import javafx.scene.effect.DropShadow;
+import javafx.scene.image.ImageView;
+import javafx.scene.image.WritableImage;
 import javafx.scene.input.MouseEvent;
-import javafx.scene.layout.Pane;
 import javafx.scene.layout.Region;
 import javafx.scene.paint.Color;
 import javafx.scene.shape.Circle;
 import javafx.scene.shape.Rectangle;
-import javafx.util.Duration;
+import javafx.scene.transform.NonInvertibleTransformException;
+import javafx.scene.transform.Transform;
+import javafx.stage.Window;
 
-import java.util.HashMap;
+import java.lang.reflect.Method;
 import java.util.List;
 
 
@@ -63,64 +62,102 @@ import java.util.List;
  */
 @DefaultProperty("children")
 public class IosSwitch extends Region {
+    /**
+     * EFFECT renders the knob shadow with a DropShadow, ATLAS shows a pre-blurred
+     * image that is shared by all knobs of the same size. The blur of the
+     * DropShadow is the most expensive part of a frame on the software pipeline.
+     */
+    public enum KnobShadow { EFFECT, ATLAS }
+
     public  static final double                              MIN_DURATION      = 10;
     public  static final double                              MAX_DURATION      = 500;
-    private static final double                              PREFERRED_WIDTH   = 38;
-    private static final double                              PREFERRED_HEIGHT  = 23;
+    private static final double                              PREFERRED_WIDTH   = SwitchGeometry.PREFERRED_WIDTH;
+    private static final double                              PREFERRED_HEIGHT  = SwitchGeometry.PREFERRED_HEIGHT;
     private static final double                              MINIMUM_WIDTH     = 20;
     private static final double                              MINIMUM_HEIGHT    = 12;
     private static final double                              MAXIMUM_WIDTH     = 1024;
     private static final double                              MAXIMUM_HEIGHT    = 1024;
-    private static final double                              ASPECT_RATIO      = PREFERRED_HEIGHT / PREFERRED_WIDTH;
-    private static final long                                LONG_PRESS_TIME   = 200_000_000l;
     private static final StyleablePropertyFactory<IosSwitch> FACTORY           = new StyleablePropertyFactory<>(Region.getClassCssMetaData());
     private static final PseudoClass                         DARK_PSEUDO_CLASS = PseudoClass.getPseudoClass("dark");
+    private static final Method                              OUTPUT_SCALE      = outputScaleMethod();
+    private static       KnobShadow                          defaultKnobShadow;
     private        final StyleableProperty<Color>            selectedColor;
+    private        final StyleableProperty<Color>            backgroundColor;
     private              BooleanProperty                     dark;
     private              double                              width;
     private              double                              height;
     private              DropShadow                          dropShadow;
+    private              KnobShadow                          knobShadowMode;
+    private              ImageView                           knobShadow;
+    private              KnobShadowAtlas.Entry               knobShadowEntry;
     private              Rectangle                           backgroundArea;
     private              Rectangle                           mainArea;
     private              Rectangle                           knob;
     private              Circle                              zero;
     private              Rectangle                           one;
-    private              Pane                                pane;
-    private              long                                pressStart;
-    private              AnimationTimer                      holdTimer;
+    private              double                              offsetX;
+    private              double                              offsetY;
+    private              Runnable                            longPressAction;
     private              boolean                             _selected;
     private              BooleanProperty                     selected;
     private              double                              _duration;
     private              DoubleProperty                      duration;
     private              boolean                             _showOnOffText;
     private              BooleanProperty                     showOnOffText;
-    private              Timeline                            timeline;
-    private              BooleanBinding                      showing;
-    private              HashMap<String, Property>           settings;
+    private              SwitchAnimation                     animation;
+    private              AnimationPolicy                     animationPolicy;
+    private              SwitchGeometry                      geometry;
+    private              SwitchGeometry                      fixedGeometry;
+    private              boolean                             geometryDirty;
+    private              Color[]                             backgroundRamp;
+    private              boolean                             attached;
+    private              Scene                               observedScene;
+    private              Window                              observedWindow;
+    private              InvalidationListener                sceneListener;
+    private              InvalidationListener                windowListener;
+    private              InvalidationListener                showingListener;
+    private              WeakInvalidationListener            weakWindowListener;
+    private              WeakInvalidationListener            weakShowingListener;
+    private              SwitchSettings                      settings;
+    private              SwitchBank                          bank;
+    private              int                                 bankIndex;
+    private              Object                              clickEvent;
+    private              Object                              settleEvent;
+    private              boolean                             idleCaching;
+    private              ImageView                           snapshotView;
+    private              SwitchSnapshotCache.Key             snapshotKey;
+    private              InvalidationListener                snapshotListener;
+                         boolean                             snapshotQueued;
+    private              boolean                             snapping;
+    private              boolean                             reverting;
+    private              ToggleEventStream                   toggleEventStream;
+    private              int                                 auditId;
+    private              boolean                             auditIdSet;
+                         ToggleEventStream.Cause             toggleCause;
+                         IosSwitchGroup                      group;
+                         boolean                             longPressFired;
+    private              boolean                             viewportCulling;
+    private              InvalidationListener                viewportListener;
+                         int                                 viewportSlot;
+                         boolean                             viewportMoved;
+                         Node                                viewportParkedBy;
+                         long                                viewportPulse;
+    volatile             int                                 pendingState;
+                         long                                pendingSince;
 
 
 
     // ******************** Constructors **************************************
     public IosSwitch() {
-        pressStart     = System.nanoTime();
-        holdTimer      = new AnimationTimer() {
-            @Override public void handle(final long now) {
-                if (now - pressStart > LONG_PRESS_TIME) {
-                    holdTimer.stop();
-                    if (isSelected()) {
-                        animateToPreDeselect();
-                    } else {
-                        animateToPreSelect();
-                    }
-                }
-            }
-        };
-        _selected      = false;
-        selectedColor  = FACTORY.createStyleableColorProperty(this, "selectedColor", "-selected-color", s -> s.selectedColor);
-        _duration      = 250;
-        _showOnOffText = false;
-        settings       = new HashMap<>();
-        timeline       = new Timeline();
+        _selected       = false;
+        selectedColor   = FACTORY.createStyleableColorProperty(this, "selectedColor", "-selected-color", s -> s.selectedColor);
+        backgroundColor = FACTORY.createStyleableColorProperty(this, "backgroundColor", "-background-color", s -> s.backgroundColor, SwitchPainter.BACKGROUND_COLOR);
+        _duration       = 250;
+        _showOnOffText  = false;
+        toggleCause     = ToggleEventStream.Cause.PROGRAMMATIC;
+        viewportCulling = false;
+        viewportSlot    = -1;
+        viewportPulse   = -1;
         initGraphics();
         registerListeners();
     }
@@ -139,132 +176,142 @@ public class IosSwitch extends Region {
 
         getStyleClass().add("ios-switch");
 
-        dropShadow = new DropShadow(BlurType.GAUSSIAN, Color.rgb(0, 0, 0, 0.25), 10.0, 0.0, 0, 5);
-
         backgroundArea = new Rectangle();
         backgroundArea.getStyleClass().add("background-area");
-        if (isSelected()) {
-            backgroundArea.setFill(getSelectedColor());
-        }
-
-        one = new Rectangle();
-        one.getStyleClass().add("one");
-        one.setMouseTransparent(true);
-        one.setVisible(false);
 
         mainArea = new Rectangle();
         mainArea.getStyleClass().add("main-area");
         mainArea.setMouseTransparent(true);
-        if (isSelected()) {
-            mainArea.setOpacity(0);
-            mainArea.setScaleX(0);
-            mainArea.setScaleY(0);
-        }
+
+        knob = new Rectangle();
+        knob.getStyleClass().add("knob");
+        knob.setMouseTransparent(true);
+
+        getChildren().setAll(backgroundArea, mainArea, knob);
+    }
+
+    /** The on/off text is only created when it is shown for the first time */
+    private void initOnOffText() {
+        one = new Rectangle();
+        one.getStyleClass().add("one");
+        one.setMouseTransparent(true);
 
         zero = new Circle();
         zero.getStyleClass().add("zero");
         zero.setMouseTransparent(true);
-        zero.setVisible(false);
 
-        knob = new Rectangle();
-        knob.getStyleClass().add("knob");
-        knob.setEffect(dropShadow);
-        knob.setMouseTransparent(true);
+        getChildren().add(1, one);
+        getChildren().add(3, zero);
 
-        pane = new Pane(backgroundArea, one, mainArea, zero, knob);
+        if (null != geometry) { resizeOnOffText(); }
+        applyAnimation();
+    }
 
-        getChildren().setAll(pane);
+    /** The animation is only created when the switch is used for the first time */
+    private SwitchAnimation animation() { return animation(isSelected()); }
+    /** RESTING_STATE is the state the switch shows if the animation doesn't exist yet */
+    private SwitchAnimation animation(final boolean RESTING_STATE) {
+        if (null == animation) {
+            animation        = new SwitchAnimation(RESTING_STATE, (a, finished) -> {
+                applyAnimation();
+                if (finished && SwitchMetrics.EVENTS_ENABLED) { settled(false); }
+            });
+            animation.policy = animationPolicy;
+        }
+        return animation;
     }
 
     private void registerListeners() {
-        widthProperty().addListener(o -> resize());
-        heightProperty().addListener(o -> resize());
+        widthProperty().addListener(o -> markGeometryDirty());
+        heightProperty().addListener(o -> markGeometryDirty());
         disabledProperty().addListener(o -> setOpacity(isDisabled() ? 0.5 : 1.0));
-        backgroundArea.addEventHandler(MouseEvent.MOUSE_CLICKED, e -> setSelected(!isSelected()));
+        InvalidationListener rampListener = o -> {
+            backgroundRamp = null;
+            if (null == animation || !animation.isRunning()) { applyAnimation(); }
+        };
+        ((ObjectProperty<Color>) selectedColor).addListener(rampListener);
+        ((ObjectProperty<Color>) backgroundColor).addListener(rampListener);
+        backgroundArea.addEventHandler(MouseEvent.MOUSE_CLICKED, e -> {
+            toggle(!isSelected(), longPressFired ? ToggleEventStream.Cause.LONG_PRESS : ToggleEventStream.Cause.CLICK);
+            if (SwitchMetrics.EVENTS_ENABLED) {
+                SwitchEvents.clickFinished(clickEvent);
+                clickEvent = null;
+            }
+        });
         backgroundArea.addEventHandler(MouseEvent.MOUSE_PRESSED, e -> {
-            pressStart = System.nanoTime();
-            holdTimer.start();
+            if (SwitchMetrics.EVENTS_ENABLED) { clickEvent = SwitchEvents.clickStarted(this); }
+            if (null == longPressAction) { longPressAction = this::longPressed; }
+            longPressFired = false;
+            LongPressDetector.INSTANCE.press(longPressAction);
         });
-        if (null != getScene()) {
-            setupBinding();
-        } else {
-            sceneProperty().addListener((o1, ov1, nv1) -> {
-                if (null == nv1) { return; }
-                if (null != getScene().getWindow()) {
-                    setupBinding();
-                } else {
-                    sceneProperty().get().windowProperty().addListener((o2, ov2, nv2) -> {
-                        if (null == nv2) { return; }
-                        setupBinding();
-                    });
-                }
-            });
-        }
+        backgroundArea.addEventHandler(MouseEvent.MOUSE_RELEASED, e -> cancelLongPress());
+        sceneListener       = o -> sceneChanged();
+        windowListener      = o -> windowChanged();
+        showingListener     = o -> showingChanged();
+        weakWindowListener  = new WeakInvalidationListener(windowListener);
+        weakShowingListener = new WeakInvalidationListener(showingListener);
+        sceneProperty().addListener(sceneListener);
+        sceneChanged();
     }
 
-    private void setupBinding() {
-        showing = Bindings.selectBoolean(sceneProperty(), "window", "showing");
-        showing.addListener((o, ov, nv) -> {
-            if (nv) {
-                for (String key : settings.keySet()) {
-                    if ("prefSize".equals(key)) {
-                        Dimension2D dim = ((ObjectProperty<Dimension2D>) settings.get(key)).get();
-                        setPrefSize(dim.getWidth(), dim.getHeight());
-                    } else if ("minSize".equals(key)) {
-                        Dimension2D dim = ((ObjectProperty<Dimension2D>) settings.get(key)).get();
-                        setMinSize(dim.getWidth(), dim.getHeight());
-                    } else if ("maxSize".equals(key)) {
-                        Dimension2D dim = ((ObjectProperty<Dimension2D>) settings.get(key)).get();
-                        setMaxSize(dim.getWidth(), dim.getHeight());
-                    } else if ("prefWidth".equals(key)) {
-                        setPrefWidth(((DoubleProperty) settings.get(key)).get());
-                    } else if ("prefHeight".equals(key)) {
-                        setPrefHeight(((DoubleProperty) settings.get(key)).get());
-                    } else if ("minWidth".equals(key)) {
-                        setMinWidth(((DoubleProperty) settings.get(key)).get());
-                    } else if ("minHeight".equals(key)) {
-                        setMinHeight(((DoubleProperty) settings.get(key)).get());
-                    } else if ("maxWidth".equals(key)) {
-                        setMaxWidth(((DoubleProperty) settings.get(key)).get());
-                    } else if ("maxHeight".equals(key)) {
-                        setMaxHeight(((DoubleProperty) settings.get(key)).get());
-                    } else if ("scaleX".equals(key)) {
-                        setScaleX(((DoubleProperty) settings.get(key)).get());
-                    } else if ("scaleY".equals(key)) {
-                        setScaleY(((DoubleProperty) settings.get(key)).get());
-                    } else if ("layoutX".equals(key)) {
-                        setLayoutX(((DoubleProperty) settings.get(key)).get());
-                    } else if ("layoutY".equals(key)) {
-                        setLayoutY(((DoubleProperty) settings.get(key)).get());
-                    } else if ("translateX".equals(key)) {
-                        setTranslateX(((DoubleProperty) settings.get(key)).get());
-                    } else if ("translateY".equals(key)) {
-                        setTranslateY(((DoubleProperty) settings.get(key)).get());
-                    } else if ("padding".equals(key)) {
-                        setPadding(((ObjectProperty<Insets>) settings.get(key)).get());
-                    } // Control specific settings
-                    else if ("selectedColor".equals(key)) {
-                        setSelectedColor(((ObjectProperty<Color>) settings.get(key)).get());
-                    } else if("dark".equals(key)) {
-                        setDark(((BooleanProperty) settings.get(key)).get());
-                    } else if ("showOnOffText".equals(key)) {
-                        setShowOnOffText(((BooleanProperty) settings.get(key)).get());
-                    } else if ("duration".equals(key)) {
-                        setDuration(((DoubleProperty) settings.get(key)).get());
-                    }
-                }
+    /**
+     * The scene and the window only hold weak references to the switch, so a
+     * switch that was removed from its scene can be collected.
+     */
+    private void sceneChanged() {
+        if (null != observedScene) { observedScene.windowProperty().removeListener(weakWindowListener); }
+        observedScene = getScene();
+        if (null != observedScene) { observedScene.windowProperty().addListener(weakWindowListener); }
+        windowChanged();
+        // The render scale of the atlas image depends on the window
+        if (null != geometry) {
+            updateKnobShadow();
+            applyAnimation();
+        }
+        invalidateSnapshot();
+    }
 
-                if (settings.containsKey("selected")) { setSelected(((BooleanProperty) settings.get("selected")).get()); }
+    private void windowChanged() {
+        Window window = null == observedScene ? null : observedScene.getWindow();
+        if (window == observedWindow) { return; }
+        if (null != observedWindow) { observedWindow.showingProperty().removeListener(weakShowingListener); }
+        observedWindow = window;
+        if (null == observedWindow) { return; }
+        observedWindow.showingProperty().addListener(weakShowingListener);
+        attached = true;
+        showingChanged();
+    }
 
-                settings.clear();
-            }
-        });
+    private void showingChanged() {
+        if (viewportSlot >= 0) { SwitchViewport.INSTANCE.moved(this); }
+        if (null == observedWindow || !observedWindow.isShowing() || null == settings) { return; }
+        SwitchSettings pending = settings;
+        settings = null;
+        pending.applyTo(this);
     }
 
 
     // ******************** Methods *******************************************
     @Override public void layoutChildren() {
+        final long START = SwitchMetrics.ENABLED ? System.nanoTime() : 0;
+        if (geometryDirty) {
+            // A switch that was laid out before keeps its old geometry until it is visible again
+            if (viewportCulling && null != geometry && !isInViewport()) {
+                SwitchViewport.INSTANCE.resizeSkipped(this);
+            } else {
+                geometryDirty = false;
+                resize();
+            }
+        }
         super.layoutChildren();
+        if (SwitchMetrics.ENABLED) { SwitchMetrics.laidOut(System.nanoTime() - START); }
+    }
+
+    /** Width and height usually change together, the geometry is recomputed once in the next layout pass */
+    private void markGeometryDirty() {
+        if (geometryDirty) { return; }
+        geometryDirty = true;
+        requestLayout();
     }
 
     @Override protected double computeMinWidth(final double HEIGHT) { return MINIMUM_WIDTH; }
@@ -278,28 +325,32 @@ public class IosSwitch extends Region {
 
     public boolean isSelected() { return null == selected ? _selected : selected.get(); }
     public void setSelected(final boolean SELECTED) {
-        if (null == showing) { settings.put("selected", new SimpleBooleanProperty(SELECTED)); return; }
-        holdTimer.stop();
+        if (!attached) { getSettings().put(Key.SELECTED, SELECTED); return; }
+        applySelected(SELECTED);
+    }
+    private void applySelected(final boolean SELECTED) {
+        cancelLongPress();
+        if (null != group && !group.allows(this, SELECTED)) {
+            vetoed(isSelected());
+            return;
+        }
         if (null == selected) {
             _selected = SELECTED;
-            if (_selected) {
-                animateToSelect();
-            } else {
-                animateToDeselect();
-            }
+            selectedChanged(_selected);
         } else {
             selected.set(SELECTED);
         }
     }
+    /**
+     * Changes the group doesn't allow are reverted, a binding that causes
+     * such a change is removed because a bound value can't be reverted.
+     */
     public BooleanProperty selectedProperty() {
         if (null == selected) {
             selected = new BooleanPropertyBase(_selected) {
                 @Override protected void invalidated() {
-                    if (get()) {
-                        animateToSelect();
-                    } else {
-                        animateToDeselect();
-                    }
+                    if (reverting) { return; }
+                    selectedChanged(get());
                 }
                 @Override public Object getBean() { return IosSwitch.this; }
                 @Override public String getName() { return "selected"; }
@@ -308,18 +359,61 @@ public class IosSwitch extends Region {
         return selected;
     }
 
+    /**
+     * Sets the state without animation and stops a running animation, used
+     * by the cells when they are reused for another row and for restored banks.
+     */
+    void snapSelected(final boolean SELECTED) {
+        if (null != settings && settings.contains(Key.SELECTED)) { settings.put(Key.SELECTED, SELECTED); }
+        if (isSelected() == SELECTED) {
+            if (null != animation && animation.isRunning()) {
+                animation.snap(SELECTED);
+                applyAnimation();
+            }
+            return;
+        }
+        snapping = true;
+        try {
+            applySelected(SELECTED);
+        } finally {
+            snapping = false;
+        }
+    }
+
+    /** Sets the state on behalf of the user, the cause ends up in the toggle event stream */
+    void toggle(final boolean SELECTED, final ToggleEventStream.Cause CAUSE) {
+        toggleCause = CAUSE;
+        try {
+            setSelected(SELECTED);
+        } finally {
+            toggleCause = ToggleEventStream.Cause.PROGRAMMATIC;
+        }
+    }
+
+    /**
+     * Requests the given state from any thread. Only the latest requested
+     * state is kept and applied on the next pulse, requests that end up in
+     * the current state will not start an animation.
+     */
+    public void setSelectedLater(final boolean SELECTED) { SwitchUpdateQueue.INSTANCE.submit(this, SELECTED); }
+
     public Color getSelectedColor() { return selectedColor.getValue(); }
     public void setSelectedColor(final Color COLOR) {
-        if (null == showing) { settings.put("selectedColor", new SimpleObjectProperty<>(COLOR)); return; }
+        if (!attached) { getSettings().put(Key.SELECTED_COLOR, COLOR); return; }
         selectedColor.setValue(COLOR);
     }
     public ObjectProperty<Color> selectedColorProperty() { return (ObjectProperty<Color>) selectedColor; }
 
+    /** The fill of the deselected switch, styleable with -background-color */
+    public Color getBackgroundColor() { return backgroundColor.getValue(); }
+    public void setBackgroundColor(final Color COLOR) { backgroundColor.setValue(COLOR); }
+    public ObjectProperty<Color> backgroundColorProperty() { return (ObjectProperty<Color>) backgroundColor; }
+
     public final boolean isDark() {
         return null == dark ? false : dark.get();
     }
     public final void setDark(final boolean DARK) {
-        if (null == showing) { settings.put("dark", new SimpleBooleanProperty(DARK)); return; }
+        if (!attached) { getSettings().put(Key.DARK, DARK); return; }
         darkProperty().set(DARK);
     }
     public final BooleanProperty darkProperty() {
@@ -337,7 +431,7 @@ public class IosSwitch extends Region {
 
     public double getDuration() { return null == duration ? _duration : duration.get(); }
     public void setDuration(final double DURATION) {
-        if (null == showing) { settings.put("duration", new SimpleDoubleProperty(DURATION)); return; }
+        if (!attached) { getSettings().put(Key.DURATION, DURATION); return; }
         if (null == duration) {
             _duration = clamp(MIN_DURATION, MAX_DURATION, DURATION);
         } else {
@@ -355,13 +449,120 @@ public class IosSwitch extends Region {
         return duration;
     }
 
+    /** Returns the stream of this switch or null if it uses ToggleEventStream.getDefault() */
+    public ToggleEventStream getToggleEventStream() { return toggleEventStream; }
+    /** Every change of the selected state is written to the given stream */
+    public void setToggleEventStream(final ToggleEventStream STREAM) { toggleEventStream = STREAM; }
+
+    /**
+     * Returns the id of this switch in the toggle event stream and the Flight
+     * Recorder events, System.identityHashCode() as long as no id was set.
+     */
+    public int getAuditId() { return auditIdSet ? auditId : System.identityHashCode(this); }
+    /** The identity hash code is neither unique nor stable between runs, audits should set their own ids */
+    public void setAuditId(final int ID) {
+        auditId    = ID;
+        auditIdSet = true;
+    }
+
+    /** Returns the policy of this switch or null if it uses AnimationPolicy.getDefault() */
+    public AnimationPolicy getAnimationPolicy() { return animationPolicy; }
+    public void setAnimationPolicy(final AnimationPolicy POLICY) {
+        animationPolicy = POLICY;
+        if (null != animation) { animation.policy = POLICY; }
+    }
+
+    /** Returns the knob shadow of this switch or null if it uses getDefaultKnobShadow() */
+    public KnobShadow getKnobShadow() { return knobShadowMode; }
+    public void setKnobShadow(final KnobShadow SHADOW) {
+        knobShadowMode = SHADOW;
+        if (null == geometry) { return; }
+        updateKnobShadow();
+        applyAnimation();
+    }
+
+    /**
+     * The default is ATLAS on the software pipeline and EFFECT otherwise, the
+     * system property eu.hansolo.fx.ioswitch.shadow=effect|atlas overrides it.
+     */
+    public static KnobShadow getDefaultKnobShadow() {
+        if (null == defaultKnobShadow) { defaultKnobShadow = detectKnobShadow(); }
+        return defaultKnobShadow;
+    }
+    /** Used by all switches that have no knob shadow of their own, from their next resize on */
+    public static void setDefaultKnobShadow(final KnobShadow SHADOW) { defaultKnobShadow = SHADOW; }
+
+    /** Returns the number of knob shadows in the atlas */
+    public static int getKnobShadowAtlasSize() { return KnobShadowAtlas.INSTANCE.size(); }
+
+    private static KnobShadow detectKnobShadow() {
+        String shadow = System.getProperty("eu.hansolo.fx.ioswitch.shadow", "");
+        if ("effect".equalsIgnoreCase(shadow)) { return KnobShadow.EFFECT; }
+        if ("atlas".equalsIgnoreCase(shadow))  { return KnobShadow.ATLAS; }
+        // Prism falls back to the software pipeline if it can't use the GPU, that pipeline has no 3D support
+        boolean software = System.getProperty("prism.order", "").trim().startsWith("sw") || !Platform.isSupported(ConditionalFeature.SCENE3D);
+        return software ? KnobShadow.ATLAS : KnobShadow.EFFECT;
+    }
+
+    public boolean isViewportCulling() { return viewportCulling; }
+    /**
+     * While viewport culling is on (off by default), a switch that is not visible
+     * (outside of the scene, clipped away e.g. by a ScrollPane, below an
+     * invisible parent or in a window that isn't showing) only records state
+     * changes and size changes. It snaps to its latest state when it is
+     * visible again.
+     */
+    public void setViewportCulling(final boolean CULLING) {
+        viewportCulling = CULLING;
+        if (!CULLING && viewportSlot >= 0) {
+            SwitchViewport.INSTANCE.remove(this);
+            revealed();
+        }
+    }
+
+    /** Returns the number of state changes that were not animated because the switch was not visible */
+    public static long getSkippedAnimations() { return SwitchViewport.INSTANCE.getSkippedAnimations(); }
+
+    /** Returns the number of size changes that were postponed because the switch was not visible */
+    public static long getSkippedResizes() { return SwitchViewport.INSTANCE.getSkippedResizes(); }
+
+    /** Returns the number of switches that snapped to their latest state when they became visible */
+    public static long getViewportReveals() { return SwitchViewport.INSTANCE.getReveals(); }
+
+    /** Returns the number of hidden switches that wait to be visible again */
+    public static int getHiddenSwitches() { return SwitchViewport.INSTANCE.getHiddenCount(); }
+
+    public static void resetViewportCounters() { SwitchViewport.INSTANCE.resetCounters(); }
+
+    public boolean isIdleCaching() { return idleCaching; }
+    /**
+     * While idle caching is on, the switch is drawn from an image that is
+     * shared by all switches that look the same and the shapes with the
+     * DropShadow are only shown while the switch animates.
+     */
+    public void setIdleCaching(final boolean CACHING) {
+        if (idleCaching == CACHING) { return; }
+        idleCaching = CACHING;
+        if (CACHING) {
+            if (null == snapshotListener) {
+                snapshotListener = o -> invalidateSnapshot();
+                knob.fillProperty().addListener(snapshotListener);
+                mainArea.fillProperty().addListener(snapshotListener);
+                backgroundProperty().addListener(snapshotListener);
+                borderProperty().addListener(snapshotListener);
+            }
+            invalidateSnapshot();
+        } else {
+            showLive();
+        }
+    }
+
     public boolean getShowOnOffText() { return null == showOnOffText ? _showOnOffText : showOnOffText.get(); }
     public void setShowOnOffText(final boolean SHOW) {
-        if (null == showing) { settings.put("setShowOnOffText", new SimpleBooleanProperty(SHOW)); return; }
+        if (!attached) { getSettings().put(Key.SHOW_ON_OFF_TEXT, SHOW); return; }
         if (null == showOnOffText) {
             _showOnOffText = SHOW;
-            one.setVisible(SHOW);
-            zero.setVisible(SHOW);
+            showOnOffText(SHOW);
         } else {
             showOnOffText.set(SHOW);
         }
@@ -369,10 +570,7 @@ public class IosSwitch extends Region {
     public BooleanProperty showOnOffTextProperty() {
         if (null == showOnOffText) {
             showOnOffText = new BooleanPropertyBase(_showOnOffText) {
-                @Override protected void invalidated() {
-                    one.setVisible(get());
-                    zero.setVisible(get());
-                }
+                @Override protected void invalidated() { showOnOffText(get()); }
                 @Override public Object getBean() { return IosSwitch.this; }
                 @Override public String getName() { return "showOnOffText"; }
             };
@@ -380,94 +578,396 @@ public class IosSwitch extends Region {
         return showOnOffText;
     }
 
-    protected HashMap<String, Property> getSettings() { return settings; }
+    private void showOnOffText(final boolean SHOW) {
+        if (null == one) {
+            if (SHOW) { initOnOffText(); }
+            return;
+        }
+        one.setVisible(SHOW && !isShowingSnapshot());
+        zero.setVisible(SHOW && !isShowingSnapshot());
+        invalidateSnapshot();
+    }
+
+    /**
+     * Uses the given geometry for every size of the switch, set by
+     * IosSwitchBuilder.fixedSize() for switches that never change their size.
+     */
+    void setFixedGeometry(final SwitchGeometry GEOMETRY) {
+        fixedGeometry = GEOMETRY;
+        markGeometryDirty();
+    }
 
-    private void animateToPreSelect() {
-        KeyValue kvKnobWidthStart   = new KeyValue(knob.widthProperty(), height * 0.89130435, Interpolator.EASE_BOTH);
-        KeyValue kvKnobWidthEnd     = new KeyValue(knob.widthProperty(), height * 0.89130435 * 1.2, Interpolator.EASE_BOTH);
-        KeyValue kvMainScaleXStart  = new KeyValue(mainArea.scaleXProperty(), 1, Interpolator.EASE_BOTH);
-        KeyValue kvMainScaleXEnd    = new KeyValue(mainArea.scaleXProperty(), 0, Interpolator.EASE_BOTH);
-        KeyValue kvMainScaleYStart  = new KeyValue(mainArea.scaleYProperty(), 1, Interpolator.EASE_BOTH);
-        KeyValue kvMainScaleYEnd    = new KeyValue(mainArea.scaleYProperty(), 0, Interpolator.EASE_BOTH);
-        KeyValue kvMainOpacityStart = new KeyValue(mainArea.opacityProperty(), 1, Interpolator.EASE_BOTH);
-        KeyValue kvMainOpacityEnd   = new KeyValue(mainArea.opacityProperty(), 0, Interpolator.EASE_BOTH);
-
-        KeyFrame kf0;
-        KeyFrame kf1;
-
-        if (isDark()) {
-            kf0 = new KeyFrame(Duration.ZERO, kvKnobWidthStart);
-            kf1 = new KeyFrame(Duration.millis(125), kvKnobWidthEnd);
+    /** Settings that will be applied once the switch is showing */
+    SwitchSettings getSettings() {
+        if (null == settings) { settings = new SwitchSettings(); }
+        return settings;
+    }
+
+    /**
+     * Binds the selected state of this switch to the given index of the bank.
+     * The switch takes the current state of the bank without animation, later
+     * changes of the bank are applied once per pulse and changes of the switch
+     * are written to the bank. Must be called on the FX thread.
+     */
+    public void bindToBank(final SwitchBank BANK, final int INDEX) {
+        if (INDEX < 0 || INDEX >= BANK.size()) { throw new IndexOutOfBoundsException("Index: " + INDEX + ", Size: " + BANK.size()); }
+        unbindBank();
+        bank      = BANK;
+        bankIndex = INDEX;
+        BANK.binding().bind(INDEX, this);
+        snapSelected(BANK.get(INDEX));
+    }
+    public void unbindBank() {
+        if (null == bank) { return; }
+        bank.binding().unbind(bankIndex, this);
+        bank = null;
+    }
+
+    /**
+     * Stops all animations, unbinds the switch from its bank, drops its
+     * pending updates and removes all listeners from the scene and window.
+     * The switch should not be used afterwards.
+     */
+    public void dispose() {
+        if (null != animation) { animation.stop(); }
+        cancelLongPress();
+        unbindBank();
+        if (null != group) { group.remove(this); }
+        SwitchViewport.INSTANCE.remove(this);
+        SwitchUpdateQueue.INSTANCE.remove(this);
+        SwitchSnapshotCache.INSTANCE.remove(this);
+        sceneProperty().removeListener(sceneListener);
+        if (null != observedScene) { observedScene.windowProperty().removeListener(weakWindowListener); }
+        if (null != observedWindow) { observedWindow.showingProperty().removeListener(weakShowingListener); }
+        observedScene  = null;
+        observedWindow = null;
+        settings       = null;
+        idleCaching    = false;
+    }
+    public SwitchBank getBank() { return bank; }
+    public int getBankIndex() { return null == bank ? -1 : bankIndex; }
+
+    /** Returns the group this switch was added to or null */
+    public IosSwitchGroup getGroup() { return group; }
+
+    void applyBankState(final boolean SELECTED) {
+        if (isSelected() == SELECTED) { return; }
+        setSelected(SELECTED);
+    }
+
+    /** Returns false if the switch already is in the given state */
+    boolean applyPendingState(final boolean SELECTED) {
+        if (attached && isSelected() == SELECTED) { return false; }
+        setSelected(SELECTED);
+        return true;
+    }
+
+    /** Returns the number of images in the cache that is used by switches with idle caching */
+    public static int getSnapshotCacheSize() { return SwitchSnapshotCache.INSTANCE.size(); }
+
+    public static int getSnapshotCacheMaxSize() { return SwitchSnapshotCache.INSTANCE.getMaxSize(); }
+    /** Sets the number of images that are kept, the least recently used images are dropped first */
+    public static void setSnapshotCacheMaxSize(final int MAX_SIZE) { SwitchSnapshotCache.INSTANCE.setMaxSize(MAX_SIZE); }
+
+    public static long getSnapshotCacheHits() { return SwitchSnapshotCache.INSTANCE.getHits(); }
+
+    public static long getSnapshotCacheMisses() { return SwitchSnapshotCache.INSTANCE.getMisses(); }
+
+    /** Drops all cached images, switches that show one keep it until they change */
+    public static void clearSnapshotCache() { SwitchSnapshotCache.INSTANCE.clear(); }
+
+    /** Returns the number of switch animations that are currently running */
+    public static int getActiveAnimations() { return SwitchAnimator.INSTANCE.getActiveCount(); }
+
+    /** Returns the number of calls to setSelectedLater() on all switches */
+    public static long getSubmittedUpdates() { return SwitchUpdateQueue.INSTANCE.getSubmitted(); }
+
+    /** Returns the number of calls to setSelectedLater() that were merged into a later one or cancelled out */
+    public static long getCoalescedUpdates() { return SwitchUpdateQueue.INSTANCE.getCoalesced(); }
+
+    public static void resetUpdateCounters() { SwitchUpdateQueue.INSTANCE.resetCounters(); }
+
+    void cancelLongPress() { if (null != longPressAction) { LongPressDetector.INSTANCE.cancel(longPressAction); } }
+
+    /** Shows the stretched knob that announces the next toggle */
+    void longPressed() {
+        longPressFired = true;
+        if (isSelected()) {
+            animateToPreDeselect();
         } else {
-            kf0 = new KeyFrame(Duration.ZERO, kvKnobWidthStart, kvMainScaleXStart, kvMainScaleYStart, kvMainOpacityStart);
-            kf1 = new KeyFrame(Duration.millis(125), kvKnobWidthEnd, kvMainScaleXEnd, kvMainScaleYEnd, kvMainOpacityEnd);
+            animateToPreSelect();
         }
+    }
 
-        timeline.getKeyFrames().setAll(kf0, kf1);
-        timeline.play();
+    private void selectedChanged(final boolean SELECTED) {
+        if (null != group && !group.allows(this, SELECTED)) {
+            revert(!SELECTED);
+            return;
+        }
+        final Object EVENT = SwitchMetrics.EVENTS_ENABLED ? SwitchEvents.changeStarted(this, SELECTED) : null;
+        if (SwitchMetrics.EVENTS_ENABLED) {
+            settled(true);
+            settleEvent = SwitchEvents.settleStarted(this, SELECTED);
+        }
+        if (null != bank) { bank.set(bankIndex, SELECTED); }
+        // Snapping only shows a state that was already there, e.g. in a reused cell
+        ToggleEventStream stream = null != toggleEventStream ? toggleEventStream : ToggleEventStream.getDefault();
+        if (null != stream && !snapping) { stream.publish(getAuditId(), SELECTED, toggleCause); }
+        if (viewportCulling && !snapping && null != geometry && !isInViewport()) {
+            // Nobody sees the animation, the switch snaps to its latest state when it is visible again
+            if (null != animation) { animation.stop(); }
+            if (SwitchMetrics.ENABLED) { SwitchMetrics.toggled(); }
+            if (SwitchMetrics.EVENTS_ENABLED) { settled(false); }
+            SwitchViewport.INSTANCE.animationSkipped(this);
+        } else if (SELECTED) {
+            animateToSelect();
+        } else {
+            animateToDeselect();
+        }
+        if (null != group) { group.memberChanged(this, SELECTED); }
+        if (SwitchMetrics.EVENTS_ENABLED) { SwitchEvents.changeFinished(EVENT); }
     }
-    private void animateToPreDeselect() {
-        KeyValue kvKnobWidthStart = new KeyValue(knob.widthProperty(), height * 0.89130435, Interpolator.EASE_BOTH);
-        KeyValue kvKnobWidthEnd   = new KeyValue(knob.widthProperty(), height * 0.89130435 * 1.2, Interpolator.EASE_BOTH);
-        KeyValue kvKnobXStart     = new KeyValue(knob.xProperty(), mainArea.getLayoutBounds().getMaxX() - height * 0.89130435, Interpolator.EASE_BOTH);
-        KeyValue kvKnobXEnd       = new KeyValue(knob.xProperty(), mainArea.getLayoutBounds().getMaxX() - height * 0.89130435 * 1.2, Interpolator.EASE_BOTH);
 
-        KeyFrame kf0 = new KeyFrame(Duration.ZERO, kvKnobWidthStart, kvKnobXStart);
-        KeyFrame kf1 = new KeyFrame(Duration.millis(50), kvKnobWidthEnd, kvKnobXEnd);
+    /** Puts back the state the group kept after the property was set or bound to a vetoed state */
+    private void revert(final boolean KEPT) {
+        reverting = true;
+        try {
+            if (null == selected) {
+                _selected = KEPT;
+            } else {
+                if (selected.isBound()) { selected.unbind(); }
+                selected.set(KEPT);
+            }
+        } finally {
+            reverting = false;
+        }
+        vetoed(KEPT);
+    }
+
+    private void vetoed(final boolean KEPT) {
+        // Undo the stretched knob of a long press that announced the vetoed toggle
+        if (null != animation && animation.isRunning()) {
+            animation.snap(KEPT);
+            applyAnimation();
+        }
+        // The vetoed state might come from the bank, which has to show the kept state again
+        if (null != bank) { bank.set(bankIndex, KEPT); }
+    }
+
+    /** Commits the Settled event of the last change, called when its animation finished or was replaced */
+    private void settled(final boolean SUPERSEDED) {
+        if (null == settleEvent) { return; }
+        SwitchEvents.settled(settleEvent, SUPERSEDED);
+        settleEvent = null;
+    }
 
-        timeline.getKeyFrames().setAll(kf0, kf1);
-        timeline.play();
+    private void animateToPreSelect() {
+        final Object EVENT = SwitchMetrics.EVENTS_ENABLED ? SwitchEvents.animateStarted(this, "preSelect") : null;
+        if (SwitchMetrics.EVENTS_ENABLED) { settled(true); }
+        animation().preSelect(isDark());
+        play();
+        if (SwitchMetrics.EVENTS_ENABLED) { SwitchEvents.animateFinished(EVENT, false); }
+    }
+    private void animateToPreDeselect() {
+        final Object EVENT = SwitchMetrics.EVENTS_ENABLED ? SwitchEvents.animateStarted(this, "preDeselect") : null;
+        if (SwitchMetrics.EVENTS_ENABLED) { settled(true); }
+        animation().preDeselect();
+        play();
+        if (SwitchMetrics.EVENTS_ENABLED) { SwitchEvents.animateFinished(EVENT, false); }
     }
 
     private void animateToSelect() {
-        KeyValue kvMainScaleXStart     = new KeyValue(mainArea.scaleXProperty(), mainArea.getScaleX(), Interpolator.EASE_BOTH);
-        KeyValue kvMainScaleXEnd       = new KeyValue(mainArea.scaleXProperty(), 0, Interpolator.EASE_BOTH);
-        KeyValue kvMainScaleYStart     = new KeyValue(mainArea.scaleYProperty(), mainArea.getScaleY(), Interpolator.EASE_BOTH);
-        KeyValue kvMainScaleYEnd       = new KeyValue(mainArea.scaleYProperty(), 0, Interpolator.EASE_BOTH);
-        KeyValue kvMainOpacityStart    = new KeyValue(mainArea.opacityProperty(), mainArea.getOpacity(), Interpolator.EASE_BOTH);
-        KeyValue kvMainOpacityEnd      = new KeyValue(mainArea.opacityProperty(), 0, Interpolator.EASE_BOTH);
-        KeyValue kvBackgroundFillStart = new KeyValue(backgroundArea.fillProperty(), Color.rgb(229, 229, 229), Interpolator.EASE_BOTH);
-        KeyValue kvBackgroundFillEnd   = new KeyValue(backgroundArea.fillProperty(), getSelectedColor(), Interpolator.EASE_BOTH);
-        KeyValue kvKnobXStart          = new KeyValue(knob.xProperty(), mainArea.getLayoutBounds().getMinX(), Interpolator.EASE_BOTH);
-        KeyValue kvKnobXEnd            = new KeyValue(knob.xProperty(), mainArea.getLayoutBounds().getMaxX() - height * 0.89130435, Interpolator.EASE_BOTH);
-        KeyValue kvOneOpacityStart     = new KeyValue(one.opacityProperty(), 0, Interpolator.EASE_BOTH);
-        KeyValue kvOneOpacityEnd       = new KeyValue(one.opacityProperty(), 1, Interpolator.EASE_BOTH);
-        KeyValue kvZeroOpacityStart    = new KeyValue(zero.opacityProperty(), 1, Interpolator.EASE_BOTH);
-        KeyValue kvZeroOpacityEnd      = new KeyValue(zero.opacityProperty(), 0, Interpolator.EASE_BOTH);
-        KeyValue kvKnobWidthStart      = new KeyValue(knob.widthProperty(), knob.getWidth(), Interpolator.EASE_BOTH);
-        KeyValue kvKnobWidthEnd        = new KeyValue(knob.widthProperty(), height * 0.89130435, Interpolator.EASE_BOTH);
-
-        KeyFrame kf0 = new KeyFrame(Duration.ZERO, kvMainScaleXStart, kvMainScaleYStart, kvMainOpacityStart, kvBackgroundFillStart, kvKnobXStart, kvOneOpacityStart, kvZeroOpacityStart, kvKnobWidthStart);
-        KeyFrame kf1 = new KeyFrame(Duration.millis(getDuration() * 0.5), kvZeroOpacityEnd);
-        KeyFrame kf2 = new KeyFrame(Duration.millis(getDuration()), kvMainScaleXEnd, kvMainScaleYEnd, kvMainOpacityEnd, kvBackgroundFillEnd, kvKnobXEnd, kvOneOpacityEnd, kvKnobWidthEnd);
-
-        timeline.getKeyFrames().setAll(kf0, kf1, kf2);
-        timeline.play();
+        if (SwitchMetrics.ENABLED) { SwitchMetrics.toggled(); }
+        final Object EVENT = SwitchMetrics.EVENTS_ENABLED ? SwitchEvents.animateStarted(this, "select") : null;
+        if (snapping || animation(false).stateChanged()) {
+            if (null != animation) { animation.snap(true); }
+            applyAnimation();
+            if (SwitchMetrics.EVENTS_ENABLED) {
+                SwitchEvents.animateFinished(EVENT, true);
+                settled(false);
+            }
+            return;
+        }
+        animation.select(getDuration());
+        play();
+        if (SwitchMetrics.EVENTS_ENABLED) { SwitchEvents.animateFinished(EVENT, false); }
     }
     private void animateToDeselect() {
-        KeyValue kvMainScaleXStart     = new KeyValue(mainArea.scaleXProperty(), 0, Interpolator.EASE_BOTH);
-        KeyValue kvMainScaleXEnd       = new KeyValue(mainArea.scaleXProperty(), 1, Interpolator.EASE_BOTH);
-        KeyValue kvMainScaleYStart     = new KeyValue(mainArea.scaleYProperty(), 0, Interpolator.EASE_BOTH);
-        KeyValue kvMainScaleYEnd       = new KeyValue(mainArea.scaleYProperty(), 1, Interpolator.EASE_BOTH);
-        KeyValue kvMainOpacityStart    = new KeyValue(mainArea.opacityProperty(), 0, Interpolator.EASE_BOTH);
-        KeyValue kvMainOpacityEnd      = new KeyValue(mainArea.opacityProperty(), 1, Interpolator.EASE_BOTH);
-        KeyValue kvBackgroundFillStart = new KeyValue(backgroundArea.fillProperty(), getSelectedColor(), Interpolator.EASE_BOTH);
-        KeyValue kvBackgroundFillEnd   = new KeyValue(backgroundArea.fillProperty(), Color.rgb(229, 229, 229), Interpolator.EASE_BOTH);
-        KeyValue kvKnobXStart          = new KeyValue(knob.xProperty(), mainArea.getLayoutBounds().getMaxX() - knob.getWidth(), Interpolator.EASE_BOTH);
-        KeyValue kvKnobXEnd            = new KeyValue(knob.xProperty(), mainArea.getLayoutBounds().getMinX(), Interpolator.EASE_BOTH);
-        KeyValue kvOneOpacityStart     = new KeyValue(one.opacityProperty(), 1, Interpolator.EASE_BOTH);
-        KeyValue kvOneOpacityEnd       = new KeyValue(one.opacityProperty(), 0, Interpolator.EASE_BOTH);
-        KeyValue kvZeroOpacityStart    = new KeyValue(zero.opacityProperty(), 0, Interpolator.EASE_BOTH);
-        KeyValue kvZeroOpacityEnd      = new KeyValue(zero.opacityProperty(), 1, Interpolator.EASE_BOTH);
-        KeyValue kvKnobWidthStart      = new KeyValue(knob.widthProperty(), knob.getWidth(), Interpolator.EASE_BOTH);
-        KeyValue kvKnobWidthEnd        = new KeyValue(knob.widthProperty(), height * 0.89130435, Interpolator.EASE_BOTH);
-
-        KeyFrame kf0 = new KeyFrame(Duration.ZERO, kvMainScaleXStart, kvMainScaleYStart, kvMainOpacityStart, kvBackgroundFillStart, kvKnobXStart, kvOneOpacityStart, kvZeroOpacityStart, kvKnobWidthStart);
-        KeyFrame kf1 = new KeyFrame(Duration.millis(getDuration() * 0.5), kvOneOpacityEnd);
-        KeyFrame kf2 = new KeyFrame(Duration.millis(getDuration()), kvMainScaleXEnd, kvMainScaleYEnd, kvMainOpacityEnd, kvBackgroundFillEnd, kvKnobXEnd, kvZeroOpacityEnd, kvKnobWidthEnd);
-
-        timeline.getKeyFrames().setAll(kf0, kf1, kf2);
-        timeline.play();
+        if (SwitchMetrics.ENABLED) { SwitchMetrics.toggled(); }
+        final Object EVENT = SwitchMetrics.EVENTS_ENABLED ? SwitchEvents.animateStarted(this, "deselect") : null;
+        if (snapping || animation(true).stateChanged()) {
+            if (null != animation) { animation.snap(false); }
+            applyAnimation();
+            if (SwitchMetrics.EVENTS_ENABLED) {
+                SwitchEvents.animateFinished(EVENT, true);
+                settled(false);
+            }
+            return;
+        }
+        animation.deselect(getDuration());
+        play();
+        if (SwitchMetrics.EVENTS_ENABLED) { SwitchEvents.animateFinished(EVENT, false); }
+    }
+
+    /** Idle switches are drawn from their snapshot, the live nodes are only needed while animating */
+    private void play() {
+        showLive();
+        animation.play();
+    }
+
+    private void applyAnimation() {
+        final double[] VALUES = null == animation ? SwitchAnimation.restingValues(isSelected()) : animation.values;
+        mainArea.setScaleX(VALUES[SwitchAnimation.MAIN_SCALE]);
+        mainArea.setScaleY(VALUES[SwitchAnimation.MAIN_SCALE]);
+        mainArea.setOpacity(VALUES[SwitchAnimation.MAIN_OPACITY]);
+        backgroundArea.setFill(backgroundFill(VALUES[SwitchAnimation.BACKGROUND]));
+        if (null != one) {
+            one.setOpacity(VALUES[SwitchAnimation.ONE_OPACITY]);
+            zero.setOpacity(VALUES[SwitchAnimation.ZERO_OPACITY]);
+        }
+        if (null == animation || !animation.isRunning()) { invalidateSnapshot(); }
+        if (null == geometry) { return; }
+        knob.setWidth(geometry.knobSize * VALUES[SwitchAnimation.KNOB_WIDTH]);
+        knob.setX(offsetX + geometry.knobX(VALUES[SwitchAnimation.KNOB_POSITION], VALUES[SwitchAnimation.KNOB_WIDTH]));
+        if (null != knobShadowEntry) {
+            // The round shadow is stretched with the knob
+            double stretch = knob.getWidth() - geometry.knobSize;
+            knobShadow.setX(knob.getX() + (geometry.knobSize - knobShadowEntry.size) * 0.5);
+            knobShadow.setFitWidth(knobShadowEntry.size + stretch);
+        }
+    }
+
+    /** Called by SwitchViewport, a scroll or a relayout moves the switch */
+    void watchViewport(final boolean WATCH) {
+        if (null == viewportListener) { viewportListener = o -> SwitchViewport.INSTANCE.moved(this); }
+        if (WATCH) {
+            localToSceneTransformProperty().addListener(viewportListener);
+        } else {
+            localToSceneTransformProperty().removeListener(viewportListener);
+        }
+    }
+
+    /** Returns true if at least a part of the switch can be seen */
+    boolean isInViewport() { return SwitchViewport.INSTANCE.isVisible(this); }
+
+    /** Snaps to the latest state and catches up on the size changes that were skipped */
+    void revealed() {
+        if (null != animation) { animation.snap(isSelected()); }
+        if (geometryDirty) { requestLayout(); }
+        applyAnimation();
+    }
+
+    private void invalidateSnapshot() {
+        if (idleCaching) { SwitchSnapshotCache.INSTANCE.refresh(this); }
+    }
+
+    private boolean isShowingSnapshot() { return null != snapshotView && snapshotView.isVisible(); }
+
+    private void showLive() {
+        if (!isShowingSnapshot()) { return; }
+        snapshotView.setVisible(false);
+        snapshotView.setImage(null);
+        snapshotKey = null;
+        setLiveNodesVisible(true);
+    }
+
+    private void setLiveNodesVisible(final boolean VISIBLE) {
+        // The background area stays pickable because it handles the mouse
+        backgroundArea.setOpacity(VISIBLE ? 1 : 0);
+        mainArea.setVisible(VISIBLE);
+        knob.setVisible(VISIBLE);
+        if (null != knobShadow) { knobShadow.setVisible(VISIBLE); }
+        if (null != one) {
+            one.setVisible(VISIBLE && getShowOnOffText());
+            zero.setVisible(VISIBLE && getShowOnOffText());
+        }
+    }
+
+    /** Called by SwitchSnapshotCache on the pulse after the look of the idle switch changed */
+    void refreshSnapshot() {
+        if (!idleCaching || null == geometry || null == getScene() || (null != animation && animation.isRunning())) { return; }
+        double                  scale = renderScale();
+        SwitchSnapshotCache.Key key   = new SwitchSnapshotCache.Key(geometry, offsetX, offsetY, scale, isSelected(), isDark(), getShowOnOffText(),
+                                                                    getBackgroundColor(), getSelectedColor(), knob.getFill(), mainArea.getFill(), getBackground(), getBorder(),
+                                                                    resolvedKnobShadow());
+        if (key.equals(snapshotKey)) { return; }
+        SwitchSnapshotCache.Entry entry = SwitchSnapshotCache.INSTANCE.get(key);
+        if (null == entry) {
+            entry = takeSnapshot(scale);
+            if (null == entry) { return; }
+            SwitchSnapshotCache.INSTANCE.put(key, entry);
+        }
+        if (null == snapshotView) {
+            snapshotView = new ImageView();
+            snapshotView.setMouseTransparent(true);
+            snapshotView.setManaged(false);
+            getChildren().add(snapshotView);
+        }
+        snapshotView.setImage(entry.image);
+        snapshotView.setX(entry.x);
+        snapshotView.setY(entry.y);
+        snapshotView.setFitWidth(entry.width);
+        snapshotView.setFitHeight(entry.height);
+        snapshotView.setVisible(true);
+        snapshotKey = key;
+        setLiveNodesVisible(false);
+    }
+
+    /** Renders the live nodes without the transforms and the opacity of the switch itself */
+    private SwitchSnapshotCache.Entry takeSnapshot(final double SCALE) {
+        if (isShowingSnapshot()) { snapshotView.setVisible(false); }
+        setLiveNodesVisible(true);
+        Bounds             bounds     = getBoundsInLocal();
+        SnapshotParameters parameters = new SnapshotParameters();
+        parameters.setFill(Color.TRANSPARENT);
+        try {
+            parameters.setTransform(Transform.scale(SCALE, SCALE).createConcatenation(getLocalToParentTransform().createInverse()));
+        } catch (NonInvertibleTransformException e) {
+            return null;
+        }
+        parameters.setViewport(new Rectangle2D(Math.floor(bounds.getMinX() * SCALE), Math.floor(bounds.getMinY() * SCALE),
+                                               Math.ceil(bounds.getWidth() * SCALE) + 1, Math.ceil(bounds.getHeight() * SCALE) + 1));
+        double opacity = getOpacity();
+        setOpacity(1);
+        WritableImage image = snapshot(parameters, null);
+        setOpacity(opacity);
+        Rectangle2D viewport = parameters.getViewport();
+        return new SwitchSnapshotCache.Entry(image, viewport.getMinX() / SCALE, viewport.getMinY() / SCALE, viewport.getWidth() / SCALE, viewport.getHeight() / SCALE);
+    }
+
+    /** Scale of the switch on the screen, rounded up to quarters to keep the number of cached images low */
+    private double renderScale() {
+        Transform transform = getLocalToSceneTransform();
+        double    scale     = Math.max(Math.hypot(transform.getMxx(), transform.getMyx()), Math.hypot(transform.getMxy(), transform.getMyy()));
+        Window    window    = null == getScene() ? null : getScene().getWindow();
+        if (null != window && null != OUTPUT_SCALE) {
+            try {
+                scale *= (Double) OUTPUT_SCALE.invoke(window);
+            } catch (ReflectiveOperationException e) {
+                // Keep the scale of the scene
+            }
+        }
+        return Math.max(0.25, Math.ceil(scale * 4) / 4);
+    }
+
+    /** Window.getOutputScaleX() only exists on JavaFX 9 and later */
+    private static Method outputScaleMethod() {
+        try {
+            return Window.class.getMethod("getOutputScaleX");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /** Colors between the deselected and selected fill are cached so that animation frames don't allocate */
+    private Color backgroundFill(final double FRACTION) {
+        if (null == backgroundRamp) {
+            backgroundRamp = new Color[33];
+            for (int i = 0 ; i < backgroundRamp.length ; i++) {
+                backgroundRamp[i] = getBackgroundColor().interpolate(getSelectedColor(), i / 32.0);
+            }
+        }
+        return backgroundRamp[(int) Math.round(clamp(0, 1, FRACTION) * 32)];
     }
 
     private double clamp(final double MIN, final double MAX, final double VALUE) {
@@ -479,56 +979,95 @@ public class IosSwitch extends Region {
 
     // ******************** Resizing ******************************************
     private void resize() {
-        width  = getWidth() - getInsets().getLeft() - getInsets().getRight();
-        height = getHeight() - getInsets().getTop() - getInsets().getBottom();
-
-        if (width > 0 && height > 0) {
-            if (ASPECT_RATIO * width > height) {
-                width = 1 / (ASPECT_RATIO / height);
-            } else if (1 / (ASPECT_RATIO / height) > width) {
-                height = ASPECT_RATIO * width;
-            }
+        final long START = SwitchMetrics.ENABLED ? System.nanoTime() : 0;
+        SwitchGeometry previousGeometry = geometry;
+        double         previousOffsetX  = offsetX;
+        double         previousOffsetY  = offsetY;
+        geometry = null != fixedGeometry ? fixedGeometry : SwitchGeometry.fit(getWidth() - getInsets().getLeft() - getInsets().getRight(),
+                                                                              getHeight() - getInsets().getTop() - getInsets().getBottom());
+        if (null != geometry) {
+            offsetX = (getWidth() - geometry.width) * 0.5;
+            offsetY = (getHeight() - geometry.height) * 0.5;
+        }
 
-            dropShadow.setRadius(height * 0.14);
-            dropShadow.setOffsetY(height * 0.065);
+        // Shared geometries make it cheap to see that nothing changed
+        if (null != geometry && (geometry != previousGeometry || offsetX != previousOffsetX || offsetY != previousOffsetY)) {
+            width   = geometry.width;
+            height  = geometry.height;
+
+            updateKnobShadow();
 
             backgroundArea.setWidth(width);
             backgroundArea.setHeight(height);
-            backgroundArea.setArcWidth(height);
-            backgroundArea.setArcHeight(height);
-
-            one.setWidth(height * 0.0326087);
-            one.setHeight(height * 0.32608696);
-            one.setX(width * 0.225 - (one.getWidth() * 0.5));
-            one.setY((height - one.getHeight()) * 0.5);
-
-            mainArea.setWidth(width * 0.93421053);
-            mainArea.setHeight(height * 0.89130435);
-            mainArea.setArcWidth(height * 0.89130435);
-            mainArea.setArcHeight(height * 0.89130435);
-            mainArea.setX(height * 0.05434783);
-            mainArea.setY(height * 0.05434783);
-
-            zero.setRadius(height * 0.1413);
-            zero.setCenterX(width * 0.765);
-            zero.setCenterY(height * 0.5);
-            zero.setStrokeWidth(height * 0.04);
-
-            knob.setWidth(height * 0.89130435);
-            knob.setHeight(height * 0.89130435);
-            knob.setArcWidth(height * 0.89130435);
-            knob.setArcHeight(height * 0.89130435);
-            if (isSelected()) {
-                knob.setX(mainArea.getLayoutBounds().getMaxX() - knob.getWidth());
-            } else {
-                knob.setX(mainArea.getLayoutBounds().getMinX());
-            }
-            knob.setY((backgroundArea.getLayoutBounds().getHeight() - knob.getLayoutBounds().getHeight()) * 0.5);
+            backgroundArea.setArcWidth(geometry.backgroundArc);
+            backgroundArea.setArcHeight(geometry.backgroundArc);
+            backgroundArea.setX(offsetX);
+            backgroundArea.setY(offsetY);
+
+            mainArea.setWidth(geometry.mainWidth);
+            mainArea.setHeight(geometry.mainHeight);
+            mainArea.setArcWidth(geometry.mainArc);
+            mainArea.setArcHeight(geometry.mainArc);
+            mainArea.setX(offsetX + geometry.mainX);
+            mainArea.setY(offsetY + geometry.mainY);
+
+            if (null != one) { resizeOnOffText(); }
+
+            knob.setHeight(geometry.knobSize);
+            knob.setArcWidth(geometry.knobSize);
+            knob.setArcHeight(geometry.knobSize);
+            knob.setY(offsetY + geometry.knobY);
 
-            pane.setMaxSize(width, height);
-            pane.setPrefSize(width, height);
-            pane.relocate((getWidth() - width) * 0.5, (getHeight() - height) * 0.5);
+            applyAnimation();
         }
+        if (SwitchMetrics.ENABLED) { SwitchMetrics.resized(System.nanoTime() - START); }
+    }
+
+    private KnobShadow resolvedKnobShadow() { return null == knobShadowMode ? getDefaultKnobShadow() : knobShadowMode; }
+
+    private void updateKnobShadow() {
+        if (KnobShadow.ATLAS == resolvedKnobShadow()) {
+            if (null != dropShadow) {
+                knob.setEffect(null);
+                dropShadow = null;
+            }
+            if (null == knobShadow) {
+                knobShadow = new ImageView();
+                knobShadow.setMouseTransparent(true);
+                knobShadow.setManaged(false);
+                knobShadow.setVisible(knob.isVisible());
+                getChildren().add(getChildren().indexOf(knob), knobShadow);
+            }
+            knobShadowEntry = KnobShadowAtlas.INSTANCE.get(geometry.knobSize, geometry.shadowRadius, renderScale());
+            knobShadow.setImage(knobShadowEntry.image);
+            knobShadow.setViewport(knobShadowEntry.viewport);
+            knobShadow.setY(offsetY + geometry.knobY + (geometry.knobSize - knobShadowEntry.size) * 0.5 + geometry.shadowOffsetY);
+            knobShadow.setFitHeight(knobShadowEntry.size);
+        } else {
+            if (null != knobShadow) {
+                getChildren().remove(knobShadow);
+                knobShadow      = null;
+                knobShadowEntry = null;
+            }
+            if (null == dropShadow) {
+                dropShadow = new DropShadow(BlurType.GAUSSIAN, Color.rgb(0, 0, 0, 0.25), 10.0, 0.0, 0, 5);
+                knob.setEffect(dropShadow);
+            }
+            dropShadow.setRadius(geometry.shadowRadius);
+            dropShadow.setOffsetY(geometry.shadowOffsetY);
+        }
+    }
+
+    private void resizeOnOffText() {
+        one.setWidth(geometry.oneWidth);
+        one.setHeight(geometry.oneHeight);
+        one.setX(offsetX + geometry.oneX);
+        one.setY(offsetY + geometry.oneY);
+
+        zero.setRadius(geometry.zeroRadius);
+        zero.setCenterX(offsetX + geometry.zeroCenterX);
+        zero.setCenterY(offsetY + geometry.zeroCenterY);
+        zero.setStrokeWidth(geometry.zeroStrokeWidth);
     }
 
 
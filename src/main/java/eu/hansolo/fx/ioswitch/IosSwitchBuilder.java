@@ -16,16 +16,10 @@
 
 package eu.hansolo.fx.ioswitch;
 
-import javafx.beans.property.Property;
-import javafx.beans.property.SimpleBooleanProperty;
-import javafx.beans.property.SimpleDoubleProperty;
-import javafx.beans.property.SimpleObjectProperty;
-import javafx.geometry.Dimension2D;
+import eu.hansolo.fx.ioswitch.SwitchSettings.Key;
 import javafx.geometry.Insets;
 import javafx.scene.paint.Color;
 
-import java.util.HashMap;
-
 
 /**
  * User: hansolo
@@ -33,7 +27,15 @@ import java.util.HashMap;
  * Time: 16:30
  */
 public class IosSwitchBuilder<B extends IosSwitchBuilder<B>> {
-    private HashMap<String, Property> properties = new HashMap<>();
+    private SwitchSettings    settings = new SwitchSettings();
+    private AnimationPolicy   animationPolicy;
+    private boolean           idleCaching;
+    private ToggleEventStream toggleEventStream;
+    private Integer           auditId;
+    private IosSwitchGroup    group;
+    private boolean           viewportCulling;
+    private double            fixedWidth;
+    private double            fixedHeight;
 
 
     // ******************** Constructors **************************************
@@ -46,112 +48,186 @@ public class IosSwitchBuilder<B extends IosSwitchBuilder<B>> {
     }
 
     public final B selected(final boolean SELECTED) {
-        properties.put("selected", new SimpleBooleanProperty(SELECTED));
+        settings.put(Key.SELECTED, SELECTED);
         return (B)this;
     }
 
     public final B selectedColor(final Color COLOR) {
-        properties.put("selectedColor", new SimpleObjectProperty<>(COLOR));
+        settings.put(Key.SELECTED_COLOR, COLOR);
         return (B)this;
     }
 
     public final B dark(final boolean DARK) {
-        properties.put("dark", new SimpleBooleanProperty(DARK));
+        settings.put(Key.DARK, DARK);
         return (B)this;
     }
 
     public final B showOnOffText(final boolean SHOW) {
-        properties.put("showOnOffText", new SimpleBooleanProperty(SHOW));
+        settings.put(Key.SHOW_ON_OFF_TEXT, SHOW);
         return (B)this;
     }
 
     public final B duration(final double DURATION) {
-        properties.put("duration", new SimpleDoubleProperty(DURATION));
+        settings.put(Key.DURATION, DURATION);
+        return (B)this;
+    }
+
+
+    public final B animationPolicy(final AnimationPolicy POLICY) {
+        animationPolicy = POLICY;
+        return (B)this;
+    }
+
+    public final B toggleEventStream(final ToggleEventStream STREAM) {
+        toggleEventStream = STREAM;
+        return (B)this;
+    }
+
+    public final B auditId(final int ID) {
+        auditId = ID;
+        return (B)this;
+    }
+
+    public final B group(final IosSwitchGroup GROUP) {
+        group = GROUP;
+        return (B)this;
+    }
+
+    public final B viewportCulling(final boolean CULLING) {
+        viewportCulling = CULLING;
+        return (B)this;
+    }
+
+    public final B idleCaching(final boolean CACHING) {
+        idleCaching = CACHING;
         return (B)this;
     }
 
 
     // General properties
     public final B prefSize(final double WIDTH, final double HEIGHT) {
-        properties.put("prefSize", new SimpleObjectProperty<>(new Dimension2D(WIDTH, HEIGHT)));
+        settings.put(Key.PREF_WIDTH, WIDTH);
+        settings.put(Key.PREF_HEIGHT, HEIGHT);
+        return (B) this;
+    }
+    /**
+     * Pins pref, min and max size to the given size. The geometry of the
+     * switch is computed once in build() and never again on layout, which
+     * helps for large grids of switches that all have the same size.
+     */
+    public final B fixedSize(final double WIDTH, final double HEIGHT) {
+        prefSize(WIDTH, HEIGHT);
+        minSize(WIDTH, HEIGHT);
+        maxSize(WIDTH, HEIGHT);
+        fixedWidth  = WIDTH;
+        fixedHeight = HEIGHT;
         return (B) this;
     }
     public final B minSize(final double WIDTH, final double HEIGHT) {
-        properties.put("minSize", new SimpleObjectProperty<>(new Dimension2D(WIDTH, HEIGHT)));
+        settings.put(Key.MIN_WIDTH, WIDTH);
+        settings.put(Key.MIN_HEIGHT, HEIGHT);
         return (B) this;
     }
     public final B maxSize(final double WIDTH, final double HEIGHT) {
-        properties.put("maxSize", new SimpleObjectProperty<>(new Dimension2D(WIDTH, HEIGHT)));
+        settings.put(Key.MAX_WIDTH, WIDTH);
+        settings.put(Key.MAX_HEIGHT, HEIGHT);
         return (B) this;
     }
 
     public final B prefWidth(final double PREF_WIDTH) {
-        properties.put("prefWidth", new SimpleDoubleProperty(PREF_WIDTH));
+        settings.put(Key.PREF_WIDTH, PREF_WIDTH);
         return (B) this;
     }
     public final B prefHeight(final double PREF_HEIGHT) {
-        properties.put("prefHeight", new SimpleDoubleProperty(PREF_HEIGHT));
+        settings.put(Key.PREF_HEIGHT, PREF_HEIGHT);
         return (B) this;
     }
 
     public final B minWidth(final double MIN_WIDTH) {
-        properties.put("minWidth", new SimpleDoubleProperty(MIN_WIDTH));
+        settings.put(Key.MIN_WIDTH, MIN_WIDTH);
         return (B) this;
     }
     public final B minHeight(final double MIN_HEIGHT) {
-        properties.put("minHeight", new SimpleDoubleProperty(MIN_HEIGHT));
+        settings.put(Key.MIN_HEIGHT, MIN_HEIGHT);
         return (B) this;
     }
 
     public final B maxWidth(final double MAX_WIDTH) {
-        properties.put("maxWidth", new SimpleDoubleProperty(MAX_WIDTH));
+        settings.put(Key.MAX_WIDTH, MAX_WIDTH);
         return (B) this;
     }
     public final B maxHeight(final double MAX_HEIGHT) {
-        properties.put("maxHeight", new SimpleDoubleProperty(MAX_HEIGHT));
+        settings.put(Key.MAX_HEIGHT, MAX_HEIGHT);
         return (B) this;
     }
 
     public final B scaleX(final double SCALE_X) {
-        properties.put("scaleX", new SimpleDoubleProperty(SCALE_X));
+        settings.put(Key.SCALE_X, SCALE_X);
         return (B) this;
     }
     public final B scaleY(final double SCALE_Y) {
-        properties.put("scaleY", new SimpleDoubleProperty(SCALE_Y));
+        settings.put(Key.SCALE_Y, SCALE_Y);
         return (B) this;
     }
 
     public final B layoutX(final double LAYOUT_X) {
-        properties.put("layoutX", new SimpleDoubleProperty(LAYOUT_X));
+        settings.put(Key.LAYOUT_X, LAYOUT_X);
         return (B) this;
     }
     public final B layoutY(final double LAYOUT_Y) {
-        properties.put("layoutY", new SimpleDoubleProperty(LAYOUT_Y));
+        settings.put(Key.LAYOUT_Y, LAYOUT_Y);
         return (B) this;
     }
 
     public final B translateX(final double TRANSLATE_X) {
-        properties.put("translateX", new SimpleDoubleProperty(TRANSLATE_X));
+        settings.put(Key.TRANSLATE_X, TRANSLATE_X);
         return (B) this;
     }
     public final B translateY(final double TRANSLATE_Y) {
-        properties.put("translateY", new SimpleDoubleProperty(TRANSLATE_Y));
+        settings.put(Key.TRANSLATE_Y, TRANSLATE_Y);
         return (B) this;
     }
 
     public final B padding(final Insets INSETS) {
-        properties.put("padding", new SimpleObjectProperty<>(INSETS));
+        settings.put(Key.PADDING, INSETS);
         return (B) this;
     }
 
 
+    SwitchSettings settings() { return settings; }
+
+    /** The builder starts over empty after build(), like the settings all other fields are reset */
     public final IosSwitch build() {
         final IosSwitch CONTROL = new IosSwitch();
 
-        CONTROL.getSettings().putAll(properties);
-
-        properties.clear();
+        if (fixedWidth > 0 && fixedHeight > 0) {
+            Insets insets = settings.contains(Key.PADDING) ? (Insets) settings.getObject(Key.PADDING) : Insets.EMPTY;
+            CONTROL.setFixedGeometry(SwitchGeometry.fit(fixedWidth - insets.getLeft() - insets.getRight(),
+                                                        fixedHeight - insets.getTop() - insets.getBottom()));
+        }
+        if (!settings.isEmpty()) {
+            CONTROL.getSettings().putAll(settings);
+            settings.clear();
+        }
+        if (null != animationPolicy) { CONTROL.setAnimationPolicy(animationPolicy); }
+        if (idleCaching) { CONTROL.setIdleCaching(true); }
+        if (null != toggleEventStream) { CONTROL.setToggleEventStream(toggleEventStream); }
+        if (null != auditId) { CONTROL.setAuditId(auditId); }
+        if (viewportCulling) { CONTROL.setViewportCulling(true); }
+        if (null != group) { group.add(CONTROL); }
+        reset();
 
         return CONTROL;
     }
+
+    private void reset() {
+        animationPolicy   = null;
+        idleCaching       = false;
+        toggleEventStream = null;
+        auditId           = null;
+        group             = null;
+        viewportCulling   = false;
+        fixedWidth        = 0;
+        fixedHeight       = 0;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2018 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.ioswitch;
+
+import javafx.event.EventHandler;
+import javafx.scene.Node;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.scene.input.MouseEvent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+
+/**
+ * Swipe-to-toggle for all IosSwitch instances below a scene or parent.
+ * Pressing a switch and dragging across others previews the change on every
+ * crossed switch, releasing the mouse sets all of them to the opposite of the
+ * state of the first switch in one batch and reports them in one callback.
+ * Long press detection is shared by all switches (see LongPressDetector).
+ *
+ * <pre>
+ * IosSwitchGestures gestures = IosSwitchGestures.install(scene);
+ * gestures.setOnSwipeToggle(switches -> System.out.println(switches.size() + " switches changed"));
+ * </pre>
+ */
+public final class IosSwitchGestures {
+    private final Scene                         scene;
+    private final Parent                        parent;
+    private final EventHandler<MouseEvent>      pressedFilter;
+    private final EventHandler<MouseEvent>      draggedFilter;
+    private final EventHandler<MouseEvent>      releasedFilter;
+    private final EventHandler<MouseEvent>      clickedFilter;
+    private final List<IosSwitch>               crossed;
+    private final Set<IosSwitch>                crossedSet;
+    private       IosSwitch                     last;
+    private       boolean                       target;
+    private       boolean                       swiping;
+    private       boolean                       consumeClick;
+    private       Consumer<List<IosSwitch>>     onSwipeToggle;
+
+
+    // ******************** Constructors **************************************
+    private IosSwitchGestures(final Scene SCENE, final Parent PARENT) {
+        scene          = SCENE;
+        parent         = PARENT;
+        crossed        = new ArrayList<>();
+        crossedSet     = Collections.newSetFromMap(new IdentityHashMap<>());
+        pressedFilter  = this::pressed;
+        draggedFilter  = this::dragged;
+        releasedFilter = this::released;
+        clickedFilter  = e -> {
+            if (!consumeClick) { return; }
+            consumeClick = false;
+            e.consume();
+        };
+        addFilters();
+    }
+
+
+    // ******************** Methods *******************************************
+    public static IosSwitchGestures install(final Scene SCENE) { return new IosSwitchGestures(SCENE, null); }
+    public static IosSwitchGestures install(final Parent PARENT) { return new IosSwitchGestures(null, PARENT); }
+
+    public void uninstall() {
+        if (null != scene) {
+            scene.removeEventFilter(MouseEvent.MOUSE_PRESSED, pressedFilter);
+            scene.removeEventFilter(MouseEvent.MOUSE_DRAGGED, draggedFilter);
+            scene.removeEventFilter(MouseEvent.MOUSE_RELEASED, releasedFilter);
+            scene.removeEventFilter(MouseEvent.MOUSE_CLICKED, clickedFilter);
+        } else {
+            parent.removeEventFilter(MouseEvent.MOUSE_PRESSED, pressedFilter);
+            parent.removeEventFilter(MouseEvent.MOUSE_DRAGGED, draggedFilter);
+            parent.removeEventFilter(MouseEvent.MOUSE_RELEASED, releasedFilter);
+            parent.removeEventFilter(MouseEvent.MOUSE_CLICKED, clickedFilter);
+        }
+        reset();
+    }
+
+    /** Called once per swipe with all switches whose state was changed by it */
+    public void setOnSwipeToggle(final Consumer<List<IosSwitch>> HANDLER) { onSwipeToggle = HANDLER; }
+
+    private void addFilters() {
+        if (null != scene) {
+            scene.addEventFilter(MouseEvent.MOUSE_PRESSED, pressedFilter);
+            scene.addEventFilter(MouseEvent.MOUSE_DRAGGED, draggedFilter);
+            scene.addEventFilter(MouseEvent.MOUSE_RELEASED, releasedFilter);
+            scene.addEventFilter(MouseEvent.MOUSE_CLICKED, clickedFilter);
+        } else {
+            parent.addEventFilter(MouseEvent.MOUSE_PRESSED, pressedFilter);
+            parent.addEventFilter(MouseEvent.MOUSE_DRAGGED, draggedFilter);
+            parent.addEventFilter(MouseEvent.MOUSE_RELEASED, releasedFilter);
+            parent.addEventFilter(MouseEvent.MOUSE_CLICKED, clickedFilter);
+        }
+    }
+
+    private void pressed(final MouseEvent EVT) {
+        reset();
+        IosSwitch control = findSwitch(EVT.getPickResult().getIntersectedNode());
+        if (null == control || control.isDisabled()) { return; }
+        last   = control;
+        target = !control.isSelected();
+        crossed.add(control);
+        crossedSet.add(control);
+    }
+
+    private void dragged(final MouseEvent EVT) {
+        if (null == last) { return; }
+        IosSwitch control = findSwitch(EVT.getPickResult().getIntersectedNode());
+        if (null == control || control == last || control.isDisabled()) { return; }
+        last = control;
+        if (!crossedSet.add(control)) { return; }
+        if (!swiping) {
+            // The first switch becomes part of the swipe as soon as a second one is crossed
+            swiping = true;
+            IosSwitch first = crossed.get(0);
+            first.cancelLongPress();
+            // A long press on the first switch already shows the stretched knob, starting it again makes the knob jump
+            if (first.isSelected() != target && !first.longPressFired) { first.longPressed(); }
+        }
+        crossed.add(control);
+        if (control.isSelected() != target) { control.longPressed(); }
+    }
+
+    private void released(final MouseEvent EVT) {
+        if (!swiping) {
+            reset();
+            return;
+        }
+        List<IosSwitch> changed = new ArrayList<>(crossed.size());
+        // Groups report the whole swipe as one change
+        for (int i = 0, n = crossed.size() ; i < n ; i++) {
+            IosSwitchGroup group = crossed.get(i).group;
+            if (null != group) { group.beginChange(ToggleEventStream.Cause.SWIPE); }
+        }
+        try {
+            for (int i = 0, n = crossed.size() ; i < n ; i++) {
+                IosSwitch control = crossed.get(i);
+                if (control.isSelected() == target) { continue; }
+                control.toggle(target, ToggleEventStream.Cause.SWIPE);
+                if (control.isSelected() == target) { changed.add(control); }
+            }
+        } finally {
+            for (int i = 0, n = crossed.size() ; i < n ; i++) {
+                IosSwitchGroup group = crossed.get(i).group;
+                if (null != group) { group.endChange(); }
+            }
+        }
+        reset();
+        consumeClick = true;
+        if (null != onSwipeToggle && !changed.isEmpty()) { onSwipeToggle.accept(Collections.unmodifiableList(changed)); }
+    }
+
+    private void reset() {
+        crossed.clear();
+        crossedSet.clear();
+        last         = null;
+        swiping      = false;
+        consumeClick = false;
+    }
+
+    private static IosSwitch findSwitch(final Node NODE) {
+        Node node = NODE;
+        while (null != node) {
+            if (node instanceof IosSwitch) { return (IosSwitch) node; }
+            node = node.getParent();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,487 @@
+/*
+ * Copyright (c) 2018 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.ioswitch;
+
+import javafx.animation.AnimationTimer;
+import javafx.beans.property.BooleanProperty;
+import javafx.beans.property.BooleanPropertyBase;
+import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.DoublePropertyBase;
+import javafx.beans.property.ObjectProperty;
+import javafx.css.CssMetaData;
+import javafx.css.PseudoClass;
+import javafx.css.Styleable;
+import javafx.css.StyleableProperty;
+import javafx.css.StyleablePropertyFactory;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.layout.Region;
+import javafx.scene.paint.Color;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Rows x columns switches drawn onto one shared Canvas. The state of all
+ * switches lives in a SwitchBank, mouse events are mapped to a cell by
+ * arithmetic and only the cells that are currently moving are redrawn.
+ */
+public class IosSwitchGrid extends Region {
+    public  static final double                                  MIN_DURATION      = IosSwitch.MIN_DURATION;
+    public  static final double                                  MAX_DURATION      = IosSwitch.MAX_DURATION;
+    private static final double                                  CELL_WIDTH        = SwitchGeometry.PREFERRED_WIDTH + 6;
+    private static final double                                  CELL_HEIGHT       = SwitchGeometry.PREFERRED_HEIGHT + 10;
+    private static final StyleablePropertyFactory<IosSwitchGrid> FACTORY           = new StyleablePropertyFactory<>(Region.getClassCssMetaData());
+    private static final PseudoClass                             DARK_PSEUDO_CLASS = PseudoClass.getPseudoClass("dark");
+    private        final int                                     rows;
+    private        final int                                     columns;
+    private        final SwitchBank                              bank;
+    private              SwitchBank.Listener                     bankListener;
+    private        final long[]                                  shown;
+    private        final long[]                                  animationStart;
+    private        final int[]                                   active;
+    private              int                                     activeCount;
+    private        final StyleableProperty<Color>                selectedColor;
+    private        final StyleableProperty<Color>                backgroundColor;
+    private        final StyleableProperty<Color>                knobColor;
+    private        final StyleableProperty<Color>                darkMainColor;
+    private              BooleanProperty                         dark;
+    private              double                                  _duration;
+    private              DoubleProperty                          duration;
+    private              boolean                                 _showOnOffText;
+    private              BooleanProperty                         showOnOffText;
+    private              double                                  cellWidth;
+    private              double                                  cellHeight;
+    private              SwitchGeometry                          geometry;
+    private              SwitchAnimation                         scratch;
+    private              Canvas                                  canvas;
+    private              GraphicsContext                         ctx;
+    private              AnimationTimer                          timer;
+    private              List<ToggleListener>                    listeners;
+    private              ToggleEventStream                       toggleEventStream;
+    private              ToggleEventStream.Cause                 toggleCause;
+    private              int                                     auditId;
+    private              boolean                                 auditIdSet;
+
+
+    // ******************** Constructors **************************************
+    public IosSwitchGrid(final int ROWS, final int COLUMNS) {
+        this(ROWS, COLUMNS, new SwitchBank(size(ROWS, COLUMNS)));
+    }
+    public IosSwitchGrid(final int ROWS, final int COLUMNS, final SwitchBank BANK) {
+        if (BANK.size() < size(ROWS, COLUMNS)) { throw new IllegalArgumentException("Bank is too small for " + ROWS + " x " + COLUMNS + " switches"); }
+        rows            = ROWS;
+        columns         = COLUMNS;
+        bank            = BANK;
+        shown           = BANK.toLongArray();
+        animationStart  = new long[ROWS * COLUMNS];
+        active          = new int[ROWS * COLUMNS];
+        activeCount     = 0;
+        selectedColor   = FACTORY.createStyleableColorProperty(this, "selectedColor", "-selected-color", s -> s.selectedColor, SwitchPainter.SELECTED_COLOR);
+        backgroundColor = FACTORY.createStyleableColorProperty(this, "backgroundColor", "-background-color", s -> s.backgroundColor, SwitchPainter.BACKGROUND_COLOR);
+        knobColor       = FACTORY.createStyleableColorProperty(this, "knobColor", "-knob-color", s -> s.knobColor, SwitchPainter.KNOB_COLOR);
+        darkMainColor   = FACTORY.createStyleableColorProperty(this, "darkMainColor", "-dark-main-color", s -> s.darkMainColor, SwitchPainter.DARK_MAIN_COLOR);
+        _duration       = 250;
+        _showOnOffText  = false;
+        scratch         = new SwitchAnimation(false);
+        listeners       = new ArrayList<>();
+        toggleCause     = ToggleEventStream.Cause.PROGRAMMATIC;
+        timer           = new AnimationTimer() {
+            @Override public void handle(final long now) { step(now); }
+        };
+        initGraphics();
+        registerListeners();
+    }
+
+
+    // ******************** Initialization ************************************
+    private void initGraphics() {
+        if (Double.compare(getPrefWidth(), 0.0) <= 0 || Double.compare(getPrefHeight(), 0.0) <= 0 || Double.compare(getWidth(), 0.0) <= 0 ||
+            Double.compare(getHeight(), 0.0) <= 0) {
+            if (getPrefWidth() > 0 && getPrefHeight() > 0) {
+                setPrefSize(getPrefWidth(), getPrefHeight());
+            } else {
+                setPrefSize(columns * CELL_WIDTH, rows * CELL_HEIGHT);
+            }
+        }
+
+        getStyleClass().add("ios-switch-grid");
+
+        canvas = new Canvas(columns * CELL_WIDTH, rows * CELL_HEIGHT);
+        ctx    = canvas.getGraphicsContext2D();
+
+        getChildren().setAll(canvas);
+    }
+
+    private void registerListeners() {
+        widthProperty().addListener(o -> resize());
+        heightProperty().addListener(o -> resize());
+        disabledProperty().addListener(o -> setOpacity(isDisabled() ? 0.5 : 1.0));
+        bankListener = (b, fromIndex, changed, values) -> {
+            int  word    = fromIndex >>> 6;
+            long pending = (shown[word] ^ values) & changed;
+            while (pending != 0) {
+                int index = fromIndex + Long.numberOfTrailingZeros(pending);
+                pending &= pending - 1;
+                if (index >= rows * columns) { break; }
+                if (b.isRestoring()) {
+                    // A restored state is shown without an animation
+                    shown[word] ^= (1L << index);
+                    stopAnimation(index);
+                    drawCell(index, 1);
+                } else {
+                    show(index);
+                }
+            }
+        };
+        bank.addListener(bankListener);
+        ((ObjectProperty<Color>) selectedColor).addListener(o -> redraw());
+        ((ObjectProperty<Color>) backgroundColor).addListener(o -> redraw());
+        ((ObjectProperty<Color>) knobColor).addListener(o -> redraw());
+        ((ObjectProperty<Color>) darkMainColor).addListener(o -> redraw());
+        addEventHandler(MouseEvent.MOUSE_CLICKED, e -> {
+            int index = indexAt(e.getX(), e.getY());
+            if (index < 0) { return; }
+            toggleCause = ToggleEventStream.Cause.CLICK;
+            try {
+                toggle(index);
+            } finally {
+                toggleCause = ToggleEventStream.Cause.PROGRAMMATIC;
+            }
+            fireToggled(index);
+        });
+    }
+
+
+    // ******************** Methods *******************************************
+    public int getRows()    { return rows; }
+    public int getColumns() { return columns; }
+    public int getSize()    { return rows * columns; }
+
+    public int index(final int ROW, final int COLUMN) { return ROW * columns + COLUMN; }
+
+    /**
+     * Returns the index of the switch at the given position in the coordinate
+     * space of the grid or -1 if there is no switch at that position.
+     */
+    public int indexAt(final double X, final double Y) {
+        if (null == geometry) { return -1; }
+        double x = X - canvas.getLayoutX();
+        double y = Y - canvas.getLayoutY();
+        if (x < 0 || y < 0) { return -1; }
+        int column = (int) (x / cellWidth);
+        int row    = (int) (y / cellHeight);
+        if (column >= columns || row >= rows) { return -1; }
+        double cellX = x - column * cellWidth - (cellWidth - geometry.width) * 0.5;
+        double cellY = y - row * cellHeight - (cellHeight - geometry.height) * 0.5;
+        if (cellX < 0 || cellY < 0 || cellX > geometry.width || cellY > geometry.height) { return -1; }
+        return row * columns + column;
+    }
+
+    public boolean isSelected(final int ROW, final int COLUMN) { return isSelected(index(ROW, COLUMN)); }
+    public boolean isSelected(final int INDEX) { return (shown[INDEX >>> 6] & (1L << INDEX)) != 0; }
+
+    public void setSelected(final int ROW, final int COLUMN, final boolean SELECTED) { setSelected(index(ROW, COLUMN), SELECTED); }
+    public void setSelected(final int INDEX, final boolean SELECTED) {
+        checkIndex(INDEX);
+        bank.set(INDEX, SELECTED);
+        if (isSelected(INDEX) != SELECTED) { show(INDEX); }
+    }
+
+    public void toggle(final int INDEX) {
+        checkIndex(INDEX);
+        boolean selected = bank.toggle(INDEX);
+        if (isSelected(INDEX) != selected) { show(INDEX); }
+    }
+
+    public SwitchBank getBank() { return bank; }
+
+    /**
+     * Stops all animations and removes the grid from its bank, the grid
+     * should not be used afterwards.
+     */
+    public void dispose() {
+        timer.stop();
+        for (int i = 0 ; i < activeCount ; i++) { animationStart[active[i]] = 0; }
+        activeCount = 0;
+        bank.removeListener(bankListener);
+        listeners.clear();
+    }
+
+    /** Sets all switches without animation */
+    public void setAllSelected(final boolean SELECTED) {
+        bank.setAll(SELECTED);
+        long[] values = bank.toLongArray();
+        for (int word = 0 ; word < shown.length ; word++) {
+            long changed = shown[word] ^ values[word];
+            while (changed != 0) {
+                int index = (word << 6) + Long.numberOfTrailingZeros(changed);
+                changed &= changed - 1;
+                if (index >= rows * columns) { break; }
+                publish(index, SELECTED);
+            }
+        }
+        System.arraycopy(values, 0, shown, 0, shown.length);
+        for (int i = 0 ; i < activeCount ; i++) { animationStart[active[i]] = 0; }
+        activeCount = 0;
+        timer.stop();
+        redraw();
+    }
+
+    /** Returns the number of switches that are currently animated */
+    public int getActiveAnimations() { return activeCount; }
+
+    /** Returns the stream of this grid or null if it uses ToggleEventStream.getDefault() */
+    public ToggleEventStream getToggleEventStream() { return toggleEventStream; }
+    /** Every change of a cell is written to the given stream, restored states are not */
+    public void setToggleEventStream(final ToggleEventStream STREAM) { toggleEventStream = STREAM; }
+
+    /**
+     * Returns the audit id of the grid, System.identityHashCode() as long as
+     * no id was set. The id of a cell in the toggle event stream is the audit
+     * id of the grid plus the index of the cell.
+     */
+    public int getAuditId() { return auditIdSet ? auditId : System.identityHashCode(this); }
+    public void setAuditId(final int ID) {
+        auditId    = ID;
+        auditIdSet = true;
+    }
+
+    public void addToggleListener(final ToggleListener LISTENER) { listeners.add(LISTENER); }
+    public void removeToggleListener(final ToggleListener LISTENER) { listeners.remove(LISTENER); }
+
+    public Color getSelectedColor() { return selectedColor.getValue(); }
+    public void setSelectedColor(final Color COLOR) { selectedColor.setValue(COLOR); }
+    public ObjectProperty<Color> selectedColorProperty() { return (ObjectProperty<Color>) selectedColor; }
+
+    public Color getBackgroundColor() { return backgroundColor.getValue(); }
+    public void setBackgroundColor(final Color COLOR) { backgroundColor.setValue(COLOR); }
+    public ObjectProperty<Color> backgroundColorProperty() { return (ObjectProperty<Color>) backgroundColor; }
+
+    public Color getKnobColor() { return knobColor.getValue(); }
+    public void setKnobColor(final Color COLOR) { knobColor.setValue(COLOR); }
+    public ObjectProperty<Color> knobColorProperty() { return (ObjectProperty<Color>) knobColor; }
+
+    public Color getDarkMainColor() { return darkMainColor.getValue(); }
+    public void setDarkMainColor(final Color COLOR) { darkMainColor.setValue(COLOR); }
+    public ObjectProperty<Color> darkMainColorProperty() { return (ObjectProperty<Color>) darkMainColor; }
+
+    public final boolean isDark() {
+        return null == dark ? false : dark.get();
+    }
+    public final void setDark(final boolean DARK) { darkProperty().set(DARK); }
+    public final BooleanProperty darkProperty() {
+        if (null == dark) {
+            dark = new BooleanPropertyBase() {
+                @Override protected void invalidated() {
+                    pseudoClassStateChanged(DARK_PSEUDO_CLASS, get());
+                    redraw();
+                }
+                @Override public Object getBean() { return IosSwitchGrid.this; }
+                @Override public String getName() { return "dark"; }
+            };
+        }
+        return dark;
+    }
+
+    public double getDuration() { return null == duration ? _duration : duration.get(); }
+    public void setDuration(final double DURATION) {
+        if (null == duration) {
+            _duration = clamp(MIN_DURATION, MAX_DURATION, DURATION);
+        } else {
+            duration.set(DURATION);
+        }
+    }
+    public DoubleProperty durationProperty() {
+        if (null == duration) {
+            duration = new DoublePropertyBase(_duration) {
+                @Override protected void invalidated() { set(clamp(MIN_DURATION, MAX_DURATION, get())); }
+                @Override public Object getBean() { return IosSwitchGrid.this; }
+                @Override public String getName() { return "duration"; }
+            };
+        }
+        return duration;
+    }
+
+    public boolean getShowOnOffText() { return null == showOnOffText ? _showOnOffText : showOnOffText.get(); }
+    public void setShowOnOffText(final boolean SHOW) {
+        if (null == showOnOffText) {
+            _showOnOffText = SHOW;
+            redraw();
+        } else {
+            showOnOffText.set(SHOW);
+        }
+    }
+    public BooleanProperty showOnOffTextProperty() {
+        if (null == showOnOffText) {
+            showOnOffText = new BooleanPropertyBase(_showOnOffText) {
+                @Override protected void invalidated() { redraw(); }
+                @Override public Object getBean() { return IosSwitchGrid.this; }
+                @Override public String getName() { return "showOnOffText"; }
+            };
+        }
+        return showOnOffText;
+    }
+
+    private void show(final int INDEX) {
+        shown[INDEX >>> 6] ^= (1L << INDEX);
+        publish(INDEX, isSelected(INDEX));
+        animate(INDEX);
+    }
+
+    private void publish(final int INDEX, final boolean SELECTED) {
+        ToggleEventStream stream = null != toggleEventStream ? toggleEventStream : ToggleEventStream.getDefault();
+        if (null != stream) { stream.publish(getAuditId() + INDEX, SELECTED, toggleCause); }
+    }
+
+    private void animate(final int INDEX) {
+        long now      = System.nanoTime();
+        long duration = (long) (getDuration() * 1_000_000);
+        long start    = animationStart[INDEX];
+        if (0 == start) {
+            active[activeCount++] = INDEX;
+            animationStart[INDEX] = now;
+        } else {
+            // Reverse a running animation from where it currently is
+            long elapsed = Math.min(duration, now - start);
+            animationStart[INDEX] = now - (duration - elapsed);
+        }
+        if (1 == activeCount) { timer.start(); }
+    }
+
+    private void stopAnimation(final int INDEX) {
+        if (0 == animationStart[INDEX]) { return; }
+        animationStart[INDEX] = 0;
+        for (int i = 0 ; i < activeCount ; i++) {
+            if (active[i] != INDEX) { continue; }
+            active[i] = active[--activeCount];
+            break;
+        }
+        if (0 == activeCount) { timer.stop(); }
+    }
+
+    private void step(final long NOW) {
+        long duration = (long) (getDuration() * 1_000_000);
+        int  count    = 0;
+        for (int i = 0 ; i < activeCount ; i++) {
+            int    index    = active[i];
+            double fraction = (double) (NOW - animationStart[index]) / duration;
+            if (fraction >= 1) {
+                animationStart[index] = 0;
+                drawCell(index, 1);
+            } else {
+                drawCell(index, Math.max(0, fraction));
+                active[count++] = index;
+            }
+        }
+        activeCount = count;
+        if (0 == activeCount) { timer.stop(); }
+    }
+
+    private void fireToggled(final int INDEX) {
+        if (listeners.isEmpty()) { return; }
+        boolean selected = isSelected(INDEX);
+        int     row      = INDEX / columns;
+        int     column   = INDEX % columns;
+        for (int i = 0 ; i < listeners.size() ; i++) { listeners.get(i).toggled(row, column, selected); }
+    }
+
+    private static int size(final int ROWS, final int COLUMNS) {
+        if (ROWS < 1 || COLUMNS < 1) { throw new IllegalArgumentException("Grid needs at least one row and one column"); }
+        if ((long) ROWS * COLUMNS > Integer.MAX_VALUE) { throw new IllegalArgumentException("Grid of " + ROWS + " x " + COLUMNS + " switches is too large"); }
+        return ROWS * COLUMNS;
+    }
+
+    private void checkIndex(final int INDEX) {
+        if (INDEX < 0 || INDEX >= rows * columns) { throw new IndexOutOfBoundsException("Index: " + INDEX); }
+    }
+
+    private double clamp(final double MIN, final double MAX, final double VALUE) {
+        if (VALUE < MIN) { return MIN; }
+        if (VALUE > MAX) { return MAX; }
+        return VALUE;
+    }
+
+
+    // ******************** Resizing ******************************************
+    private void resize() {
+        double width  = getWidth() - getInsets().getLeft() - getInsets().getRight();
+        double height = getHeight() - getInsets().getTop() - getInsets().getBottom();
+
+        if (width <= 0 || height <= 0) { return; }
+
+        cellWidth  = width / columns;
+        cellHeight = height / rows;
+        // Keep a gap between the cells that leaves room for the knob shadow
+        geometry   = SwitchGeometry.fit(cellWidth * 0.85, cellHeight * 0.7);
+        if (null == geometry) { return; }
+
+        ctx.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+        canvas.setWidth(width);
+        canvas.setHeight(height);
+        canvas.relocate(getInsets().getLeft(), getInsets().getTop());
+
+        redraw();
+    }
+
+    private void redraw() {
+        if (null == geometry) { return; }
+        long   now      = System.nanoTime();
+        double duration = getDuration() * 1_000_000;
+        ctx.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+        for (int i = 0, n = rows * columns ; i < n ; i++) {
+            drawCell(i, 0 == animationStart[i] ? 1 : Math.max(0, (now - animationStart[i]) / duration));
+        }
+    }
+
+    private void drawCell(final int INDEX, final double FRACTION) {
+        if (null == geometry) { return; }
+        boolean selected = isSelected(INDEX);
+        double  cellX    = (INDEX % columns) * cellWidth;
+        double  cellY    = (INDEX / columns) * cellHeight;
+
+        // Same key values as IosSwitch.animateToSelect() / animateToDeselect() started from the resting state
+        scratch.reset(!selected);
+        if (selected) {
+            scratch.select(getDuration());
+        } else {
+            scratch.deselect(getDuration());
+        }
+        scratch.interpolate(Math.min(1, FRACTION));
+
+        ctx.clearRect(cellX, cellY, cellWidth, cellHeight);
+        SwitchPainter.paint(ctx, geometry, cellX + (cellWidth - geometry.width) * 0.5, cellY + (cellHeight - geometry.height) * 0.5, scratch.values,
+                            isDark(), getShowOnOffText(), getBackgroundColor(), getSelectedColor(), getKnobColor(), getDarkMainColor());
+    }
+
+
+    // ******************** Style related *************************************
+    @Override public String getUserAgentStylesheet() {
+        return IosSwitch.class.getResource("ios-switch.css").toExternalForm();
+    }
+
+    public static List<CssMetaData<? extends Styleable, ?>> getClassCssMetaData() { return FACTORY.getCssMetaData(); }
+    @Override public List<CssMetaData<? extends Styleable, ?>> getCssMetaData() { return FACTORY.getCssMetaData(); }
+
+
+    // ******************** Inner Classes *************************************
+    public interface ToggleListener {
+        void toggled(int row, int column, boolean selected);
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2018 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.ioswitch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.function.Consumer;
+
+
+/**
+ * Keeps the selected state of a set of switches consistent with a policy.
+ * <ul>
+ *   <li>EXCLUSIVE: at most one switch is selected, selecting a switch
+ *       deselects the one that was selected before</li>
+ *   <li>AT_MOST_K: at most k switches are selected, selecting one more
+ *       deselects the switch that was selected first</li>
+ *   <li>AT_LEAST_ONE: the last selected switch can't be deselected</li>
+ * </ul>
+ * The selected members are kept in selection order, so a change only
+ * touches the switches that flip and never scans the group. Every user
+ * action (click, long press, swipe) and every programmatic change results
+ * in one Change with all switches that flipped because of it.
+ *
+ * <pre>
+ * IosSwitchGroup modes = IosSwitchGroup.exclusive();
+ * modes.add(auto, manual, off);
+ * modes.setOnChange(change -> System.out.println(change.getSelected()));
+ * </pre>
+ * Must only be used on the FX thread.
+ */
+public final class IosSwitchGroup {
+    public enum Policy { EXCLUSIVE, AT_MOST_K, AT_LEAST_ONE }
+
+    private final Policy                   policy;
+    private final int                      maxSelected;
+    private final int                      minSelected;
+    private final List<IosSwitch>          members;
+    private final LinkedHashSet<IosSwitch> selection;
+    private       Consumer<Change>         onChange;
+    private       int                      changeDepth;
+    private       ToggleEventStream.Cause  changeCause;
+    private       List<IosSwitch>          changeSelected;
+    private       List<IosSwitch>          changeDeselected;
+
+
+    // ******************** Constructors **************************************
+    private IosSwitchGroup(final Policy POLICY, final int MAX_SELECTED, final int MIN_SELECTED) {
+        policy      = POLICY;
+        maxSelected = MAX_SELECTED;
+        minSelected = MIN_SELECTED;
+        members     = new ArrayList<>();
+        selection   = new LinkedHashSet<>();
+    }
+
+
+    // ******************** Methods *******************************************
+    public static IosSwitchGroup exclusive() { return new IosSwitchGroup(Policy.EXCLUSIVE, 1, 0); }
+
+    public static IosSwitchGroup atMost(final int K) {
+        if (K < 1) { throw new IllegalArgumentException("K must be at least 1"); }
+        return new IosSwitchGroup(Policy.AT_MOST_K, K, 0);
+    }
+
+    public static IosSwitchGroup atLeastOne() { return new IosSwitchGroup(Policy.AT_LEAST_ONE, Integer.MAX_VALUE, 1); }
+
+    public Policy getPolicy() { return policy; }
+
+    /** Returns the number of switches that may be selected at the same time */
+    public int getMaxSelected() { return maxSelected; }
+
+    /**
+     * Adds the switches to this group and removes them from their previous
+     * group. Selected switches that exceed the policy are deselected in the
+     * order they were added.
+     */
+    public void add(final IosSwitch... SWITCHES) {
+        beginChange(ToggleEventStream.Cause.PROGRAMMATIC);
+        try {
+            for (IosSwitch control : SWITCHES) {
+                if (this == control.group) { continue; }
+                if (null != control.group) { control.group.remove(control); }
+                control.group = this;
+                members.add(control);
+                if (control.isSelected()) { memberChanged(control, true); }
+            }
+        } finally {
+            endChange();
+        }
+    }
+
+    /** Removes the switch from this group, its state is not changed */
+    public void remove(final IosSwitch SWITCH) {
+        if (this != SWITCH.group) { return; }
+        SWITCH.group = null;
+        members.remove(SWITCH);
+        selection.remove(SWITCH);
+    }
+
+    public List<IosSwitch> getSwitches() { return Collections.unmodifiableList(members); }
+
+    /** Returns the selected switches in the order they were selected */
+    public List<IosSwitch> getSelected() { return new ArrayList<>(selection); }
+
+    public int getSelectedCount() { return selection.size(); }
+
+    /** Called once per user action or programmatic change with all switches that flipped */
+    public void setOnChange(final Consumer<Change> HANDLER) { onChange = HANDLER; }
+
+    /** Returns false if the policy doesn't allow the switch to go to the given state */
+    boolean allows(final IosSwitch SWITCH, final boolean SELECTED) {
+        return SELECTED || selection.size() > minSelected || !selection.contains(SWITCH);
+    }
+
+    /**
+     * Called by the switch when its selected state changed. Switches that are
+     * deselected to make room are removed from the index before they are
+     * told, so their own call returns right away.
+     */
+    void memberChanged(final IosSwitch SWITCH, final boolean SELECTED) {
+        boolean changed = SELECTED ? selection.add(SWITCH) : selection.remove(SWITCH);
+        if (!changed) { return; }
+        beginChange(SWITCH.toggleCause);
+        try {
+            record(SWITCH, SELECTED);
+            while (selection.size() > maxSelected) {
+                Iterator<IosSwitch> iterator = selection.iterator();
+                IosSwitch           oldest   = iterator.next();
+                iterator.remove();
+                record(oldest, false);
+                oldest.setSelected(false);
+            }
+        } finally {
+            endChange();
+        }
+    }
+
+    /** Changes between begin and end are reported as one, e.g. all switches of a swipe */
+    void beginChange(final ToggleEventStream.Cause CAUSE) {
+        if (0 == changeDepth++) {
+            changeCause      = CAUSE;
+            changeSelected   = null;
+            changeDeselected = null;
+        }
+    }
+
+    void endChange() {
+        if (--changeDepth > 0) { return; }
+        List<IosSwitch> selected   = null == changeSelected ? Collections.emptyList() : changeSelected;
+        List<IosSwitch> deselected = null == changeDeselected ? Collections.emptyList() : changeDeselected;
+        changeSelected   = null;
+        changeDeselected = null;
+        if (null == onChange || (selected.isEmpty() && deselected.isEmpty())) { return; }
+        onChange.accept(new Change(this, changeCause, selected, deselected));
+    }
+
+    /** A switch that flips back within the same change is not reported at all */
+    private void record(final IosSwitch SWITCH, final boolean SELECTED) {
+        if (null == changeSelected) {
+            changeSelected   = new ArrayList<>(2);
+            changeDeselected = new ArrayList<>(2);
+        }
+        List<IosSwitch> opposite = SELECTED ? changeDeselected : changeSelected;
+        if (!opposite.remove(SWITCH)) { (SELECTED ? changeSelected : changeDeselected).add(SWITCH); }
+    }
+
+
+    // ******************** Inner Classes *************************************
+    public static final class Change {
+        private final IosSwitchGroup          group;
+        private final ToggleEventStream.Cause cause;
+        private final List<IosSwitch>         selected;
+        private final List<IosSwitch>         deselected;
+
+
+        // ******************** Constructors **********************************
+        Change(final IosSwitchGroup GROUP, final ToggleEventStream.Cause CAUSE, final List<IosSwitch> SELECTED, final List<IosSwitch> DESELECTED) {
+            group      = GROUP;
+            cause      = CAUSE;
+            selected   = Collections.unmodifiableList(SELECTED);
+            deselected = Collections.unmodifiableList(DESELECTED);
+        }
+
+
+        // ******************** Methods ***************************************
+        public IosSwitchGroup getGroup() { return group; }
+
+        /** Returns the kind of action that started the change */
+        public ToggleEventStream.Cause getCause() { return cause; }
+
+        /** Returns the switches that were selected by this change */
+        public List<IosSwitch> getSelected() { return selected; }
+
+        /** Returns the switches that were deselected by this change */
+        public List<IosSwitch> getDeselected() { return deselected; }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2018 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.ioswitch;
+
+import javafx.beans.value.ObservableValue;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.util.Callback;
+import javafx.util.StringConverter;
+
+
+/**
+ * A ListCell that shows the text of an item next to an IosSwitch for its
+ * boolean state. Every cell keeps its switch while the ListView reuses it for
+ * other items, moving to another item snaps the switch to its state, only
+ * toggles by the user animate.
+ *
+ * <pre>
+ * listView.setCellFactory(IosSwitchListCell.forListView(Item::enabledProperty));
+ * </pre>
+ */
+public class IosSwitchListCell<T> extends ListCell<T> {
+    private final IosSwitch                             control;
+    private final SwitchCellBinding                     binding;
+    private       Callback<T, ObservableValue<Boolean>> selectedStateCallback;
+    private       StringConverter<T>                    converter;
+
+
+    // ******************** Constructors **************************************
+    public IosSwitchListCell(final Callback<T, ObservableValue<Boolean>> CALLBACK) {
+        this(CALLBACK, null);
+    }
+    /**
+     * @param CALLBACK  returns the state of an item
+     * @param CONVERTER converts an item to the text of the cell, if null toString() is used
+     */
+    public IosSwitchListCell(final Callback<T, ObservableValue<Boolean>> CALLBACK, final StringConverter<T> CONVERTER) {
+        selectedStateCallback = CALLBACK;
+        converter             = CONVERTER;
+        control               = new IosSwitch();
+        binding               = new SwitchCellBinding(control);
+        getStyleClass().add("ios-switch-list-cell");
+    }
+
+
+    // ******************** Methods *******************************************
+    public static <T> Callback<ListView<T>, ListCell<T>> forListView(final Callback<T, ObservableValue<Boolean>> CALLBACK) {
+        return list -> new IosSwitchListCell<>(CALLBACK);
+    }
+    public static <T> Callback<ListView<T>, ListCell<T>> forListView(final Callback<T, ObservableValue<Boolean>> CALLBACK, final StringConverter<T> CONVERTER) {
+        return list -> new IosSwitchListCell<>(CALLBACK, CONVERTER);
+    }
+
+    /** Returns the switch of this cell, e.g. to style it or to enable idle caching */
+    public IosSwitch getSwitch() { return control; }
+
+    public Callback<T, ObservableValue<Boolean>> getSelectedStateCallback() { return selectedStateCallback; }
+    public void setSelectedStateCallback(final Callback<T, ObservableValue<Boolean>> CALLBACK) { selectedStateCallback = CALLBACK; }
+
+    public StringConverter<T> getConverter() { return converter; }
+    public void setConverter(final StringConverter<T> CONVERTER) { converter = CONVERTER; }
+
+    @Override protected void updateItem(final T ITEM, final boolean EMPTY) {
+        super.updateItem(ITEM, EMPTY);
+        if (EMPTY) {
+            binding.unbind();
+            setText(null);
+            setGraphic(null);
+            return;
+        }
+        binding.bind(null == selectedStateCallback ? null : selectedStateCallback.call(ITEM), Boolean.FALSE);
+
+        setText(null != converter ? converter.toString(ITEM) : null == ITEM ? "" : ITEM.toString());
+        setGraphic(control);
+    }
+}
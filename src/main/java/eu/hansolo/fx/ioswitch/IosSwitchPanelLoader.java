@@ -0,0 +1,266 @@
+/*
+ * Copyright (c) 2018 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.ioswitch;
+
+import eu.hansolo.fx.ioswitch.SwitchSettings.Key;
+import javafx.collections.ObservableList;
+import javafx.scene.Node;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Rectangle;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+
+/**
+ * Creates a large number of switches over several pulses so that the window
+ * shows up right away. loadInto() adds a cheap placeholder for every switch,
+ * each following pulse replaces as many placeholders by real switches as fit
+ * into the frame budget, including their CSS pass.
+ *
+ * <pre>
+ * IosSwitchPanelLoader loader = IosSwitchPanelLoader.fromCsv(Files.lines(path));
+ * loader.setOnLoaded(switches -> System.out.println(switches.size() + " switches"));
+ * loader.loadInto(flowPane);
+ * </pre>
+ * The CSV description starts with a header that names the columns, every
+ * following line describes one switch, empty cells keep the default. Colors
+ * take every format of Color.web(), commas inside parentheses don't split
+ * cells, quoting is not supported:
+ * <pre>
+ * selected,selectedColor,dark,showOnOffText,duration,prefWidth,prefHeight
+ * true,#4bd863,,,,76,46
+ * true,rgb(75, 216, 99)
+ * false,,true
+ * </pre>
+ * loadInto() and cancel() must be called on the FX thread.
+ */
+public final class IosSwitchPanelLoader {
+    public  static final double                    DEFAULT_FRAME_BUDGET = 8;
+    private static final String[]                  COLUMNS              = { "selected", "selectedColor", "dark", "showOnOffText", "duration", "prefWidth", "prefHeight" };
+    private        final List<IosSwitchBuilder<?>> specs;
+    private        final PulseTrigger              trigger;
+    private              long                      frameBudget;
+    private              long                      replaceNanos;
+    private              long                      cssNanos;
+    private              Consumer<List<IosSwitch>> onLoaded;
+    private              ObservableList<Node>      children;
+    private              Rectangle[]               placeholders;
+    private              int                       offset;
+    private              int                       next;
+    private              List<IosSwitch>           switches;
+
+
+    // ******************** Constructors **************************************
+    private IosSwitchPanelLoader(final List<IosSwitchBuilder<?>> SPECS) {
+        specs       = SPECS;
+        frameBudget = (long) (DEFAULT_FRAME_BUDGET * 1_000_000);
+        cssNanos    = -1;
+        trigger     = new PulseTrigger() {
+            @Override protected void pulse(final long now) { loadSlice(); }
+        };
+    }
+
+
+    // ******************** Methods *******************************************
+    /** Every builder describes one switch and is built once */
+    public static IosSwitchPanelLoader of(final List<? extends IosSwitchBuilder<?>> SPECS) { return new IosSwitchPanelLoader(new ArrayList<>(SPECS)); }
+    public static IosSwitchPanelLoader of(final Stream<? extends IosSwitchBuilder<?>> SPECS) { return new IosSwitchPanelLoader(SPECS.collect(Collectors.toList())); }
+
+    /**
+     * Reads the CSV description described above, the lines can be parsed on
+     * any thread, only the switches are created on the FX thread.
+     */
+    public static IosSwitchPanelLoader fromCsv(final Stream<String> LINES) {
+        Iterator<String> lines = LINES.iterator();
+        if (!lines.hasNext()) { return new IosSwitchPanelLoader(new ArrayList<>()); }
+        String[] header  = cells(lines.next());
+        int[]    columns = new int[header.length];
+        for (int i = 0 ; i < header.length ; i++) {
+            columns[i] = indexOf(header[i].trim());
+            if (columns[i] < 0) { throw new IllegalArgumentException("Unknown column: " + header[i]); }
+        }
+        List<IosSwitchBuilder<?>> specs = new ArrayList<>();
+        while (lines.hasNext()) {
+            String line = lines.next();
+            if (line.trim().isEmpty()) { continue; }
+            String[]            cells   = cells(line);
+            IosSwitchBuilder<?> builder = IosSwitchBuilder.create();
+            for (int i = 0 ; i < Math.min(cells.length, columns.length) ; i++) {
+                String cell = cells[i].trim();
+                if (cell.isEmpty()) { continue; }
+                switch(columns[i]) {
+                    case 0: builder.selected(Boolean.parseBoolean(cell)); break;
+                    case 1: builder.selectedColor(Color.web(cell)); break;
+                    case 2: builder.dark(Boolean.parseBoolean(cell)); break;
+                    case 3: builder.showOnOffText(Boolean.parseBoolean(cell)); break;
+                    case 4: builder.duration(Double.parseDouble(cell)); break;
+                    case 5: builder.prefWidth(Double.parseDouble(cell)); break;
+                    case 6: builder.prefHeight(Double.parseDouble(cell)); break;
+                }
+            }
+            specs.add(builder);
+        }
+        return new IosSwitchPanelLoader(specs);
+    }
+
+    /** Splits the line at every comma that is not inside parentheses, e.g. of rgb(75, 216, 99) */
+    private static String[] cells(final String LINE) {
+        List<String> cells = new ArrayList<>();
+        int          depth = 0;
+        int          start = 0;
+        for (int i = 0 ; i < LINE.length() ; i++) {
+            switch(LINE.charAt(i)) {
+                case '(': depth++; break;
+                case ')': depth = Math.max(0, depth - 1); break;
+                case ',':
+                    if (0 == depth) {
+                        cells.add(LINE.substring(start, i));
+                        start = i + 1;
+                    }
+                    break;
+            }
+        }
+        cells.add(LINE.substring(start));
+        return cells.toArray(new String[0]);
+    }
+
+    private static int indexOf(final String COLUMN) {
+        for (int i = 0 ; i < COLUMNS.length ; i++) {
+            if (COLUMNS[i].equals(COLUMN)) { return i; }
+        }
+        return -1;
+    }
+
+    public int getCount() { return specs.size(); }
+
+    /** Returns the fraction (0 - 1) of switches that were created */
+    public double getProgress() { return specs.isEmpty() ? 1 : next / (double) specs.size(); }
+
+    public double getFrameBudget() { return frameBudget / 1_000_000.0; }
+    /** Time in milliseconds that may be spent per pulse, at least one switch is created per pulse */
+    public void setFrameBudget(final double MILLIS) {
+        if (MILLIS <= 0) { throw new IllegalArgumentException("Frame budget must be positive"); }
+        frameBudget = (long) (MILLIS * 1_000_000);
+    }
+
+    /** Called on the FX thread with all switches in the order of their specs */
+    public void setOnLoaded(final Consumer<List<IosSwitch>> HANDLER) { onLoaded = HANDLER; }
+
+    /** Returns the switches created so far */
+    public List<IosSwitch> getSwitches() { return null == switches ? Collections.emptyList() : Collections.unmodifiableList(switches); }
+
+    /** Appends a placeholder per switch to the children of the pane, the switches follow on the next pulses */
+    public void loadInto(final Pane PANE) {
+        if (null != children) { throw new IllegalStateException("Loader was already used"); }
+        children     = PANE.getChildren();
+        offset       = children.size();
+        placeholders = new Rectangle[specs.size()];
+        switches     = new ArrayList<>(specs.size());
+        for (int i = 0 ; i < placeholders.length ; i++) { placeholders[i] = placeholder(specs.get(i).settings()); }
+        children.addAll(placeholders);
+        trigger.request();
+    }
+
+    /** Stops loading and removes the placeholders that were not replaced yet */
+    public void cancel() {
+        if (null == placeholders || next == placeholders.length) { return; }
+        Set<Node> remaining = Collections.newSetFromMap(new IdentityHashMap<>());
+        remaining.addAll(Arrays.asList(placeholders).subList(next, placeholders.length));
+        children.removeAll(remaining);
+        Arrays.fill(placeholders, null);
+        next = placeholders.length;
+    }
+
+    /** Looks like the background of the switch in its initial state */
+    private static Rectangle placeholder(final SwitchSettings SETTINGS) {
+        double    width       = SETTINGS.contains(Key.PREF_WIDTH) ? SETTINGS.getDouble(Key.PREF_WIDTH) : SwitchGeometry.PREFERRED_WIDTH;
+        double    height      = SETTINGS.contains(Key.PREF_HEIGHT) ? SETTINGS.getDouble(Key.PREF_HEIGHT) : SwitchGeometry.PREFERRED_HEIGHT;
+        boolean   selected    = SETTINGS.getBoolean(Key.SELECTED);
+        Color     color       = SETTINGS.contains(Key.SELECTED_COLOR) ? (Color) SETTINGS.getObject(Key.SELECTED_COLOR) : SwitchPainter.SELECTED_COLOR;
+        Rectangle placeholder = new Rectangle(width, height, selected ? color : SwitchPainter.BACKGROUND_COLOR);
+        placeholder.setArcWidth(height);
+        placeholder.setArcHeight(height);
+        placeholder.getStyleClass().add("ios-switch-placeholder");
+        return placeholder;
+    }
+
+    /**
+     * The switches of a slice replace their placeholders with one removal and
+     * one addition, i.e. two changes of the children per slice instead of one
+     * per switch. Every change makes the parent look at all its children.
+     * The replacement and the CSS pass, which needs the switches in the
+     * scene, follow the build of the slice. Their measured times, per slice
+     * and per switch, are reserved in the budget of the next slice. Until
+     * the first measurement the CSS pass is assumed to cost as much as the
+     * build of a switch.
+     */
+    private void loadSlice() {
+        if (next == placeholders.length) { return; }
+        final long START    = System.nanoTime();
+        final long DEADLINE = START + frameBudget;
+        final int  FIRST    = next;
+        while (true) {
+            switches.add(specs.get(next).build());
+            specs.set(next++, null);
+            if (next == placeholders.length) { break; }
+            long now   = System.nanoTime();
+            int  built = next - FIRST;
+            long css   = cssNanos < 0 ? (now - START) / built : cssNanos;
+            if (now + replaceNanos + css * (built + 1) >= DEADLINE) { break; }
+        }
+        final long BUILT = System.nanoTime();
+
+        List<IosSwitch> slice = switches.subList(FIRST, next);
+        int             from  = offset + FIRST;
+        int             to    = offset + next;
+        if (to <= children.size() && children.get(from) == placeholders[FIRST] && children.get(to - 1) == placeholders[next - 1]) {
+            children.remove(from, to);
+            children.addAll(from, slice);
+        } else {
+            // Someone else changed the children in the meantime
+            for (int i = FIRST ; i < next ; i++) {
+                int index = children.indexOf(placeholders[i]);
+                if (index >= 0) { children.set(index, switches.get(i)); }
+            }
+        }
+        final long REPLACED = System.nanoTime();
+        for (int i = FIRST ; i < next ; i++) {
+            placeholders[i] = null;
+            switches.get(i).applyCss();
+        }
+        // Smoothed over the slices, a single slice might have been hit by a gc
+        long css = (System.nanoTime() - REPLACED) / (next - FIRST);
+        replaceNanos = (replaceNanos + REPLACED - BUILT) >>> 1;
+        cssNanos     = cssNanos < 0 ? css : (cssNanos + css) >>> 1;
+
+        if (next < placeholders.length) {
+            trigger.request();
+        } else if (null != onLoaded) {
+            onLoaded.accept(getSwitches());
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2018 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.ioswitch;
+
+import javafx.beans.value.ObservableValue;
+import javafx.geometry.Pos;
+import javafx.scene.control.ContentDisplay;
+import javafx.scene.control.TableCell;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
+import javafx.util.Callback;
+
+
+/**
+ * A TableCell that shows a boolean column as IosSwitch. Every cell keeps its
+ * switch while the TableView reuses it for other rows, moving to another row
+ * snaps the switch to the state of that row, only toggles by the user animate.
+ *
+ * <pre>
+ * column.setCellFactory(IosSwitchTableCell.forTableColumn());
+ * </pre>
+ */
+public class IosSwitchTableCell<S> extends TableCell<S, Boolean> {
+    private final IosSwitch                                   control;
+    private final SwitchCellBinding                           binding;
+    private       Callback<Integer, ObservableValue<Boolean>> selectedStateCallback;
+
+
+    // ******************** Constructors **************************************
+    public IosSwitchTableCell() {
+        this(null);
+    }
+    /**
+     * @param CALLBACK returns the state for a row index, if null the cell
+     *                 uses the cell value of its column
+     */
+    public IosSwitchTableCell(final Callback<Integer, ObservableValue<Boolean>> CALLBACK) {
+        selectedStateCallback = CALLBACK;
+        control               = new IosSwitch();
+        binding               = new SwitchCellBinding(control);
+        getStyleClass().add("ios-switch-table-cell");
+        setAlignment(Pos.CENTER);
+        setContentDisplay(ContentDisplay.GRAPHIC_ONLY);
+    }
+
+
+    // ******************** Methods *******************************************
+    public static <S> Callback<TableColumn<S, Boolean>, TableCell<S, Boolean>> forTableColumn() {
+        return column -> new IosSwitchTableCell<>();
+    }
+    public static <S> Callback<TableColumn<S, Boolean>, TableCell<S, Boolean>> forTableColumn(final Callback<Integer, ObservableValue<Boolean>> CALLBACK) {
+        return column -> new IosSwitchTableCell<>(CALLBACK);
+    }
+
+    /** Returns the switch of this cell, e.g. to style it or to enable idle caching */
+    public IosSwitch getSwitch() { return control; }
+
+    public Callback<Integer, ObservableValue<Boolean>> getSelectedStateCallback() { return selectedStateCallback; }
+    public void setSelectedStateCallback(final Callback<Integer, ObservableValue<Boolean>> CALLBACK) { selectedStateCallback = CALLBACK; }
+
+    @Override protected void updateItem(final Boolean ITEM, final boolean EMPTY) {
+        super.updateItem(ITEM, EMPTY);
+        if (EMPTY) {
+            binding.unbind();
+            setGraphic(null);
+            return;
+        }
+        TableColumn<S, Boolean> column = getTableColumn();
+        binding.bind(null != selectedStateCallback ? selectedStateCallback.call(getIndex()) :
+                     null != column                ? column.getCellObservableValue(getIndex()) : null, ITEM);
+
+        TableView<S> table = getTableView();
+        control.setDisable(null == table || null == column || !(table.isEditable() && column.isEditable() && isEditable()));
+        setGraphic(control);
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2018 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.ioswitch;
+
+import javafx.geometry.Rectangle2D;
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * Pre-blurred knob shadows for the software pipeline, where a Gaussian
+ * DropShadow per knob is the most expensive part of a frame. The shadows are
+ * computed once per knob size and render scale in Java with the same kernel
+ * as DropShadow(BlurType.GAUSSIAN) and packed into shared atlas pages that
+ * the switches show through an ImageView viewport. Must only be used on the
+ * FX thread.
+ */
+final class KnobShadowAtlas {
+            static final KnobShadowAtlas  INSTANCE    = new KnobShadowAtlas();
+    private static final int              PAGE_SIZE   = 512;
+    private static final int              MAX_ENTRIES = 256;
+    private static final double           OPACITY     = 0.25;
+    private        final Map<Long, Entry> entries;
+    private              WritableImage    page;
+    private              int              cursorX;
+    private              int              cursorY;
+    private              int              rowHeight;
+
+
+    // ******************** Constructors **************************************
+    private KnobShadowAtlas() {
+        entries = new HashMap<>();
+    }
+
+
+    // ******************** Methods *******************************************
+    /** Returns the shadow of a round knob, it is centered on the knob and a bit larger than KNOB_SIZE + 2 * RADIUS */
+    Entry get(final double KNOB_SIZE, final double RADIUS, final double SCALE) {
+        long  key   = Math.round(KNOB_SIZE * 4) << 40 | Math.round(RADIUS * 4) << 20 | Math.round(SCALE * 4);
+        Entry entry = entries.get(key);
+        if (null == entry) {
+            // Sizes that are no longer used stay in the old pages until no switch shows them
+            if (entries.size() >= MAX_ENTRIES) {
+                entries.clear();
+                page = null;
+            }
+            entry = create(KNOB_SIZE, RADIUS, SCALE);
+            entries.put(key, entry);
+        }
+        return entry;
+    }
+
+    int size() { return entries.size(); }
+
+    private Entry create(final double KNOB_SIZE, final double RADIUS, final double SCALE) {
+        final int   SIZE   = (int) Math.ceil((KNOB_SIZE + 2 * RADIUS) * SCALE);
+        final int[] PIXELS = blur(SIZE, KNOB_SIZE * 0.5 * SCALE, RADIUS * SCALE);
+
+        WritableImage target;
+        int           x;
+        int           y;
+        if (SIZE > PAGE_SIZE) {
+            target = new WritableImage(SIZE, SIZE);
+            x      = 0;
+            y      = 0;
+        } else {
+            if (null == page || cursorX + SIZE > PAGE_SIZE) {
+                cursorX    = 0;
+                cursorY   += rowHeight;
+                rowHeight  = 0;
+            }
+            if (null == page || cursorY + SIZE > PAGE_SIZE) {
+                page      = new WritableImage(PAGE_SIZE, PAGE_SIZE);
+                cursorX   = 0;
+                cursorY   = 0;
+                rowHeight = 0;
+            }
+            target     = page;
+            x          = cursorX;
+            y          = cursorY;
+            cursorX   += SIZE;
+            rowHeight  = Math.max(rowHeight, SIZE);
+        }
+        target.getPixelWriter().setPixels(x, y, SIZE, SIZE, PixelFormat.getIntArgbInstance(), PIXELS, 0, SIZE);
+        return new Entry(target, new Rectangle2D(x, y, SIZE, SIZE), SIZE / SCALE);
+    }
+
+    /**
+     * Black circle with the given radius in the center of a SIZE x SIZE image,
+     * blurred like DropShadow with BlurType.GAUSSIAN (sigma = radius / 3).
+     */
+    private static int[] blur(final int SIZE, final double CIRCLE_RADIUS, final double BLUR_RADIUS) {
+        final double CENTER = SIZE * 0.5;
+        float[]      mask   = new float[SIZE * SIZE];
+        for (int y = 0 ; y < SIZE ; y++) {
+            for (int x = 0 ; x < SIZE ; x++) {
+                // 4 x 4 samples per pixel for an antialiased edge
+                int inside = 0;
+                for (int sy = 0 ; sy < 4 ; sy++) {
+                    for (int sx = 0 ; sx < 4 ; sx++) {
+                        double dx = x + (sx + 0.5) * 0.25 - CENTER;
+                        double dy = y + (sy + 0.5) * 0.25 - CENTER;
+                        if (dx * dx + dy * dy <= CIRCLE_RADIUS * CIRCLE_RADIUS) { inside++; }
+                    }
+                }
+                mask[y * SIZE + x] = inside / 16f;
+            }
+        }
+
+        final int     KERNEL_RADIUS = Math.max(1, (int) Math.ceil(BLUR_RADIUS));
+        final double  SIGMA         = Math.max(0.5, BLUR_RADIUS / 3);
+        final float[] KERNEL        = new float[2 * KERNEL_RADIUS + 1];
+        float         sum           = 0;
+        for (int i = -KERNEL_RADIUS ; i <= KERNEL_RADIUS ; i++) {
+            KERNEL[i + KERNEL_RADIUS] = (float) Math.exp(-(i * i) / (2 * SIGMA * SIGMA));
+            sum += KERNEL[i + KERNEL_RADIUS];
+        }
+        for (int i = 0 ; i < KERNEL.length ; i++) { KERNEL[i] /= sum; }
+
+        float[] horizontal = new float[SIZE * SIZE];
+        for (int y = 0 ; y < SIZE ; y++) {
+            for (int x = 0 ; x < SIZE ; x++) {
+                float value = 0;
+                for (int k = -KERNEL_RADIUS ; k <= KERNEL_RADIUS ; k++) {
+                    int sx = x + k;
+                    if (sx >= 0 && sx < SIZE) { value += mask[y * SIZE + sx] * KERNEL[k + KERNEL_RADIUS]; }
+                }
+                horizontal[y * SIZE + x] = value;
+            }
+        }
+        int[] pixels = new int[SIZE * SIZE];
+        for (int y = 0 ; y < SIZE ; y++) {
+            for (int x = 0 ; x < SIZE ; x++) {
+                float value = 0;
+                for (int k = -KERNEL_RADIUS ; k <= KERNEL_RADIUS ; k++) {
+                    int sy = y + k;
+                    if (sy >= 0 && sy < SIZE) { value += horizontal[sy * SIZE + x] * KERNEL[k + KERNEL_RADIUS]; }
+                }
+                int alpha = (int) Math.round(Math.min(1, value) * OPACITY * 255);
+                pixels[y * SIZE + x] = alpha << 24;
+            }
+        }
+        return pixels;
+    }
+
+
+    // ******************** Inner Classes *************************************
+    static final class Entry {
+        final Image       image;
+        final Rectangle2D viewport;
+        /** Width and height in the coordinates of the switch */
+        final double      size;
+
+        Entry(final Image IMAGE, final Rectangle2D VIEWPORT, final double SIZE) {
+            image    = IMAGE;
+            viewport = VIEWPORT;
+            size     = SIZE;
+        }
+    }
+}
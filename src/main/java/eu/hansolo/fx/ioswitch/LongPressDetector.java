@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2018 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.ioswitch;
+
+import javafx.animation.AnimationTimer;
+
+
+/**
+ * One timer that detects a long press for all switches. There is only one
+ * mouse, so only the switch that was pressed last is watched and the timer
+ * only runs while a press is pending.
+ */
+final class LongPressDetector extends AnimationTimer {
+    static  final LongPressDetector INSTANCE        = new LongPressDetector();
+    static  final long              LONG_PRESS_TIME = 200_000_000l;
+    private       Runnable          pending;
+    private       long              pressStart;
+
+
+    // ******************** Constructors **************************************
+    private LongPressDetector() {}
+
+
+    // ******************** Methods *******************************************
+    void press(final Runnable ON_LONG_PRESS) {
+        pending    = ON_LONG_PRESS;
+        pressStart = System.nanoTime();
+        start();
+    }
+
+    /** Cancels the pending long press if it belongs to the given action */
+    void cancel(final Runnable ON_LONG_PRESS) {
+        if (pending != ON_LONG_PRESS) { return; }
+        pending = null;
+        stop();
+    }
+
+    @Override public void handle(final long now) {
+        if (now - pressStart <= LONG_PRESS_TIME) { return; }
+        Runnable action = pending;
+        pending = null;
+        stop();
+        if (null == action) { return; }
+        // Counted here because the swipe preview of IosSwitchGestures shows the same stretched knob
+        if (SwitchMetrics.ENABLED) { SwitchMetrics.longPressed(); }
+        action.run();
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2018 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.ioswitch;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+
+/**
+ * Runs pulse() once on the next pulse of the FX thread after request() was
+ * called from any thread. Any number of requests between two pulses lead to
+ * one call and the timer only runs while there is something to do.
+ */
+abstract class PulseTrigger {
+    private final AtomicBoolean  requested;
+    private final AnimationTimer timer;
+    private final Runnable       starter;
+
+
+    // ******************** Constructors **************************************
+    PulseTrigger() {
+        requested = new AtomicBoolean(false);
+        timer     = new AnimationTimer() {
+            @Override public void handle(final long now) {
+                stop();
+                requested.set(false);
+                pulse(now);
+            }
+        };
+        starter   = timer::start;
+    }
+
+
+    // ******************** Methods *******************************************
+    final void request() {
+        if (!requested.compareAndSet(false, true)) { return; }
+        if (Platform.isFxApplicationThread()) {
+            timer.start();
+        } else {
+            Platform.runLater(starter);
+        }
+    }
+
+    protected abstract void pulse(long now);
+}
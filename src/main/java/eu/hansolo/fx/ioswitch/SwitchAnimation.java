@@ -0,0 +1,268 @@
+/*
+ * Copyright (c) 2018 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.ioswitch;
+
+/**
+ * Primitive animation state of a switch. Every visual property of the switch
+ * is a channel that moves from a start to an end value between the start of
+ * the animation and its own end fraction, eased like Interpolator.EASE_BOTH.
+ * With AnimationPolicy.SPRING every channel is a critically damped spring
+ * that keeps its velocity when it gets a new end value.
+ * Running animations are stepped by the shared SwitchAnimator, nothing is
+ * allocated when an animation is (re)started.
+ */
+final class SwitchAnimation {
+            static final int             KNOB_POSITION      = 0;
+            static final int             KNOB_WIDTH         = 1;
+            static final int             MAIN_SCALE         = 2;
+            static final int             MAIN_OPACITY       = 3;
+            static final int             BACKGROUND         = 4;
+            static final int             ONE_OPACITY        = 5;
+            static final int             ZERO_OPACITY       = 6;
+            static final int             CHANNELS           = 7;
+    // A critically damped spring is within 1% of its target after 6.64 / omega seconds
+    private static final double          SPRING_SETTLE      = 6.64;
+    private static final double          SPRING_EPSILON     = 0.001;
+    private static final double[]        RESTING_SELECTED   = new SwitchAnimation(true).values;
+    private static final double[]        RESTING_DESELECTED = new SwitchAnimation(false).values;
+                   final double[]        values;
+    private        final double[]        start;
+    private        final double[]        end;
+    private        final double[]        endFraction;
+    private        final double[]        velocity;
+    private              double          duration;
+    private              double          updateRate;
+    private              long            lastChange;
+    private              boolean         spring;
+    private              double          omega;
+    private              long            lastStep;
+                   final Target          target;
+                         AnimationPolicy policy;
+                         long            startTime;
+                         long            lastFrame;
+                         int             slot;
+
+
+    // ******************** Constructors **************************************
+    SwitchAnimation(final boolean SELECTED) { this(SELECTED, null); }
+    SwitchAnimation(final boolean SELECTED, final Target TARGET) {
+        target      = TARGET;
+        slot        = -1;
+        values      = new double[CHANNELS];
+        start       = new double[CHANNELS];
+        end         = new double[CHANNELS];
+        endFraction = new double[CHANNELS];
+        velocity    = new double[CHANNELS];
+        duration    = 0;
+        reset(SELECTED);
+    }
+
+
+    // ******************** Methods *******************************************
+    /** Moves all channels to the resting state of a selected or deselected switch */
+    void reset(final boolean SELECTED) {
+        values[KNOB_POSITION] = SELECTED ? 1 : 0;
+        values[KNOB_WIDTH]    = 1;
+        values[MAIN_SCALE]    = SELECTED ? 0 : 1;
+        values[MAIN_OPACITY]  = SELECTED ? 0 : 1;
+        values[BACKGROUND]    = SELECTED ? 1 : 0;
+        values[ONE_OPACITY]   = SELECTED ? 1 : 0;
+        values[ZERO_OPACITY]  = SELECTED ? 0 : 1;
+        for (int i = 0 ; i < CHANNELS ; i++) { velocity[i] = 0; }
+    }
+
+    /** Channel values of a resting switch, must not be modified */
+    static double[] restingValues(final boolean SELECTED) { return SELECTED ? RESTING_SELECTED : RESTING_DESELECTED; }
+
+    /** Starts a new set of key values, every channel keeps its current value until targeted */
+    void prepare(final double DURATION) {
+        duration = DURATION;
+        spring   = getPolicy().isSpring();
+        omega    = SPRING_SETTLE * 1000 / Math.max(1, DURATION);
+        for (int i = 0 ; i < CHANNELS ; i++) {
+            start[i]       = values[i];
+            end[i]         = values[i];
+            endFraction[i] = 1;
+        }
+    }
+
+    void target(final int CHANNEL, final double START, final double END) { target(CHANNEL, START, END, 1); }
+    void target(final int CHANNEL, final double START, final double END, final double END_FRACTION) {
+        start[CHANNEL]       = START;
+        end[CHANNEL]         = END;
+        endFraction[CHANNEL] = END_FRACTION;
+    }
+
+    double getDuration() { return duration; }
+
+    AnimationPolicy getPolicy() { return null == policy ? AnimationPolicy.getDefault() : policy; }
+
+    /**
+     * Records a change of the selected state and returns true if the policy
+     * wants the switch to jump to the new state. The update rate is the
+     * number of changes per second, exponentially decayed over
+     * AnimationPolicy.RATE_WINDOW and measured before this change, so the
+     * first change after a quiet period is always animated.
+     */
+    boolean stateChanged() {
+        long   now  = System.nanoTime();
+        double rate = 0 == lastChange ? 0 : updateRate * Math.exp(-(now - lastChange) / AnimationPolicy.RATE_WINDOW);
+        lastChange = now;
+        updateRate = rate + 1_000_000_000 / AnimationPolicy.RATE_WINDOW;
+        return getPolicy().snaps(rate);
+    }
+
+    /** Stops a running animation and moves all channels to the resting state */
+    void snap(final boolean SELECTED) {
+        stop();
+        reset(SELECTED);
+    }
+
+    /** Starts the prepared key values on the shared SwitchAnimator */
+    void play() { SwitchAnimator.INSTANCE.play(this); }
+
+    void stop() {
+        SwitchAnimator.INSTANCE.stop(this);
+        lastStep = 0;
+    }
+
+    boolean isRunning() { return slot >= 0; }
+
+    /** Key values of IosSwitch.animateToPreSelect() */
+    void preSelect(final boolean DARK) {
+        prepare(125);
+        target(KNOB_WIDTH, 1, SwitchGeometry.KNOB_STRETCH);
+        if (!DARK) {
+            target(MAIN_SCALE, 1, 0);
+            target(MAIN_OPACITY, 1, 0);
+        }
+    }
+
+    /** Key values of IosSwitch.animateToPreDeselect() */
+    void preDeselect() {
+        prepare(50);
+        target(KNOB_WIDTH, 1, SwitchGeometry.KNOB_STRETCH);
+        target(KNOB_POSITION, 1, 1);
+    }
+
+    /** Key values of IosSwitch.animateToSelect() */
+    void select(final double DURATION) {
+        prepare(DURATION);
+        if (spring) {
+            settleAt(RESTING_SELECTED);
+            return;
+        }
+        target(MAIN_SCALE, values[MAIN_SCALE], 0);
+        target(MAIN_OPACITY, values[MAIN_OPACITY], 0);
+        target(BACKGROUND, 0, 1);
+        target(KNOB_POSITION, 0, 1);
+        target(ONE_OPACITY, 0, 1);
+        target(ZERO_OPACITY, 1, 0, 0.5);
+        target(KNOB_WIDTH, values[KNOB_WIDTH], 1);
+    }
+
+    /** Key values of IosSwitch.animateToDeselect() */
+    void deselect(final double DURATION) {
+        prepare(DURATION);
+        if (spring) {
+            settleAt(RESTING_DESELECTED);
+            return;
+        }
+        target(MAIN_SCALE, 0, 1);
+        target(MAIN_OPACITY, 0, 1);
+        target(BACKGROUND, 1, 0);
+        target(KNOB_POSITION, 1, 0);
+        target(ONE_OPACITY, 1, 0, 0.5);
+        target(ZERO_OPACITY, 0, 1);
+        target(KNOB_WIDTH, values[KNOB_WIDTH], 1);
+    }
+
+    /** The springs only need their end values, they start from the current values and velocities */
+    private void settleAt(final double[] VALUES) {
+        for (int i = 0 ; i < CHANNELS ; i++) { end[i] = VALUES[i]; }
+    }
+
+    /**
+     * Skips frames if the policy caps the frame rate, the last frame of a
+     * timed animation is never skipped.
+     */
+    boolean skipsFrame(final long NOW) {
+        long interval = getPolicy().getFrameInterval();
+        if (0 == interval || NOW - lastFrame >= interval) { return false; }
+        return spring || NOW - startTime < duration * 1_000_000;
+    }
+
+    /** Moves all channels to the given time and returns true when the animation is finished */
+    boolean advance(final long NOW) {
+        if (spring) { return step(NOW); }
+        double  nanos    = duration * 1_000_000;
+        double  fraction = nanos <= 0 ? 1 : (NOW - startTime) / nanos;
+        boolean finished = fraction >= 1;
+        interpolate(finished ? 1 : Math.max(0, fraction));
+        return finished;
+    }
+
+    /**
+     * Exact solution of the critically damped spring for the time since the
+     * last step, so the result doesn't depend on the frame rate.
+     */
+    private boolean step(final long NOW) {
+        double  dt      = Math.max(0, (NOW - (0 == lastStep ? startTime : lastStep)) / 1e9);
+        double  decay   = Math.exp(-omega * dt);
+        boolean settled = true;
+        lastStep = NOW;
+        for (int i = 0 ; i < CHANNELS ; i++) {
+            double x = values[i] - end[i];
+            double c = velocity[i] + omega * x;
+            x           = (x + c * dt) * decay;
+            velocity[i] = (velocity[i] - omega * c * dt) * decay;
+            values[i]   = Math.max(0, end[i] + x);
+            if (Math.abs(x) > SPRING_EPSILON || Math.abs(velocity[i]) > omega * SPRING_EPSILON) { settled = false; }
+        }
+        if (!settled) { return false; }
+        for (int i = 0 ; i < CHANNELS ; i++) {
+            values[i]   = end[i];
+            velocity[i] = 0;
+        }
+        lastStep = 0;
+        return true;
+    }
+
+    /** Updates all channels for the given fraction (0 - 1) of the duration */
+    void interpolate(final double FRACTION) {
+        for (int i = 0 ; i < CHANNELS ; i++) {
+            double f = endFraction[i] <= 0 ? 1 : Math.min(1, FRACTION / endFraction[i]);
+            values[i] = start[i] + (end[i] - start[i]) * easeBoth(f);
+        }
+    }
+
+    /** Same curve as Interpolator.EASE_BOTH without going through the interpolator */
+    static double easeBoth(final double T) {
+        if (T <= 0) { return 0; }
+        if (T >= 1) { return 1; }
+        if (T < 0.2) { return 3.125 * T * T; }
+        if (T > 0.8) { return -3.125 * T * T + 6.25 * T - 2.125; }
+        return 1.25 * T - 0.125;
+    }
+
+
+    // ******************** Inner Classes *************************************
+    interface Target {
+        /** Called after the channel values changed, FINISHED is true on the last step */
+        void apply(SwitchAnimation animation, boolean finished);
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2018 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.ioswitch;
+
+import javafx.animation.AnimationTimer;
+
+import java.util.Arrays;
+
+
+/**
+ * One AnimationTimer that steps all running switch animations. Animations
+ * are kept in a dense array, starting or finishing an animation is O(1) and
+ * allocates nothing once the array is big enough. Must only be used on the
+ * FX thread.
+ */
+final class SwitchAnimator extends AnimationTimer {
+    static final SwitchAnimator    INSTANCE = new SwitchAnimator();
+    private      SwitchAnimation[] active;
+    private      int               activeCount;
+    private      boolean           running;
+
+
+    // ******************** Constructors **************************************
+    private SwitchAnimator() {
+        active      = new SwitchAnimation[64];
+        activeCount = 0;
+        running     = false;
+    }
+
+
+    // ******************** Methods *******************************************
+    void play(final SwitchAnimation ANIMATION) {
+        ANIMATION.startTime = System.nanoTime();
+        ANIMATION.lastFrame = 0;
+        if (ANIMATION.slot < 0) {
+            if (activeCount == active.length) { active = Arrays.copyOf(active, activeCount * 2); }
+            ANIMATION.slot        = activeCount;
+            active[activeCount++] = ANIMATION;
+        }
+        if (!running) {
+            running = true;
+            start();
+        }
+    }
+
+    void stop(final SwitchAnimation ANIMATION) {
+        if (ANIMATION.slot < 0) { return; }
+        remove(ANIMATION.slot);
+    }
+
+    int getActiveCount() { return activeCount; }
+
+    @Override public void handle(final long now) {
+        for (int i = activeCount - 1 ; i >= 0 ; i--) {
+            SwitchAnimation animation = active[i];
+            if (animation.skipsFrame(now)) { continue; }
+            animation.lastFrame = now;
+            boolean finished = animation.advance(now);
+            if (finished) { remove(i); }
+            if (null != animation.target) { animation.target.apply(animation, finished); }
+        }
+        if (0 == activeCount) {
+            running = false;
+            stop();
+        }
+    }
+
+    private void remove(final int SLOT) {
+        SwitchAnimation animation = active[SLOT];
+        SwitchAnimation last      = active[--activeCount];
+        active[SLOT]        = last;
+        last.slot           = SLOT;
+        active[activeCount] = null;
+        animation.slot      = -1;
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright (c) 2018 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.ioswitch;
+
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+/**
+ * Lock-free model for the state of many switches, packed into 64 switches
+ * per long. All methods can be called from any thread. Changes are collected
+ * in a dirty set which the views drain once per pulse on the FX thread (see
+ * addListener() and IosSwitch.bindToBank()) instead of getting one event per
+ * switch.
+ */
+public final class SwitchBank {
+    private final    int               size;
+    private final    AtomicLongArray   words;
+    private final    AtomicLongArray   dirty;
+    private final    AtomicBoolean     signalled;
+    private volatile Runnable          onDirty;
+    private volatile SwitchBankBinding binding;
+    private volatile boolean           snap;
+    private          boolean           restoring;
+
+
+    // ******************** Constructors **************************************
+    public SwitchBank(final int SIZE) {
+        if (SIZE < 0) { throw new IllegalArgumentException("Size must not be negative"); }
+        size      = SIZE;
+        words     = new AtomicLongArray((SIZE + 63) >>> 6);
+        dirty     = new AtomicLongArray((SIZE + 63) >>> 6);
+        signalled = new AtomicBoolean(false);
+    }
+
+
+    // ******************** Methods *******************************************
+    public int size() { return size; }
+
+    public int wordCount() { return words.length(); }
+
+    public boolean get(final int INDEX) {
+        checkIndex(INDEX);
+        return (words.get(INDEX >>> 6) & (1L << INDEX)) != 0;
+    }
+
+    /** Returns the word with the switches 64 * WORD_INDEX to 64 * WORD_INDEX + 63 */
+    public long getWord(final int WORD_INDEX) { return words.get(WORD_INDEX); }
+
+    /** Sets the given switch and returns its previous state */
+    public boolean set(final int INDEX, final boolean SELECTED) {
+        checkIndex(INDEX);
+        final int  WORD = INDEX >>> 6;
+        final long MASK = 1L << INDEX;
+        long current;
+        long next;
+        do {
+            current = words.get(WORD);
+            next    = SELECTED ? current | MASK : current & ~MASK;
+            if (current == next) { return SELECTED; }
+        } while (!words.compareAndSet(WORD, current, next));
+        markDirty(WORD, MASK);
+        return !SELECTED;
+    }
+
+    /** Toggles the given switch and returns its new state */
+    public boolean toggle(final int INDEX) {
+        checkIndex(INDEX);
+        final int  WORD = INDEX >>> 6;
+        final long MASK = 1L << INDEX;
+        long current;
+        do {
+            current = words.get(WORD);
+        } while (!words.compareAndSet(WORD, current, current ^ MASK));
+        markDirty(WORD, MASK);
+        return (current & MASK) == 0;
+    }
+
+    public void setAll(final boolean SELECTED) {
+        for (int i = 0, n = words.length() ; i < n ; i++) {
+            long value   = SELECTED ? validBits(i) : 0L;
+            long changed = words.getAndSet(i, value) ^ value;
+            if (changed != 0) { markDirty(i, changed); }
+        }
+    }
+
+    /**
+     * Replaces COUNT words starting at WORD_INDEX with the words from SOURCE
+     * starting at SOURCE_OFFSET. Bits beyond size() are ignored.
+     */
+    public void setWords(final int WORD_INDEX, final long[] SOURCE, final int SOURCE_OFFSET, final int COUNT) {
+        if (WORD_INDEX < 0 || COUNT < 0 || WORD_INDEX + COUNT > words.length()) { throw new IndexOutOfBoundsException("Words " + WORD_INDEX + " - " + (WORD_INDEX + COUNT)); }
+        for (int i = 0 ; i < COUNT ; i++) {
+            int  word    = WORD_INDEX + i;
+            long value   = SOURCE[SOURCE_OFFSET + i] & validBits(word);
+            long changed = words.getAndSet(word, value) ^ value;
+            if (changed != 0) { markDirty(word, changed); }
+        }
+    }
+
+    /**
+     * Sets the bank to the given words, switches beyond the end of WORDS are
+     * switched off (BitSet.toLongArray() drops trailing zero words).
+     */
+    public void assign(final long[] WORDS) {
+        final int COUNT = Math.min(WORDS.length, words.length());
+        setWords(0, WORDS, 0, COUNT);
+        for (int i = COUNT, n = words.length() ; i < n ; i++) {
+            long changed = words.getAndSet(i, 0L);
+            if (changed != 0) { markDirty(i, changed); }
+        }
+    }
+
+    public void assign(final BitSet BITS) { assign(BITS.toLongArray()); }
+
+    /**
+     * Like assign() but the bound switches take the new state without an
+     * animation on the next pulse, used to restore a saved state (see
+     * SwitchBankStore).
+     */
+    public void restore(final long[] WORDS) {
+        snap = true;
+        assign(WORDS);
+    }
+
+    /** Returns true once after restore() was called */
+    boolean takeSnap() {
+        if (!snap) { return false; }
+        snap = false;
+        return true;
+    }
+
+    /**
+     * Returns true while the listeners are called with the changes of
+     * restore(), views should show those without an animation. Only valid
+     * within Listener.changed().
+     */
+    public boolean isRestoring() { return restoring; }
+    void setRestoring(final boolean RESTORING) { restoring = RESTORING; }
+
+    public long[] toLongArray() {
+        long[] result = new long[words.length()];
+        for (int i = 0 ; i < result.length ; i++) { result[i] = words.get(i); }
+        return result;
+    }
+
+    public BitSet toBitSet() { return BitSet.valueOf(toLongArray()); }
+
+    /**
+     * Registers a listener that will be called on the FX thread once per pulse
+     * for every word that changed since the last pulse.
+     */
+    public void addListener(final Listener LISTENER) { binding().addListener(LISTENER); }
+    public void removeListener(final Listener LISTENER) { binding().removeListener(LISTENER); }
+
+    SwitchBankBinding binding() {
+        SwitchBankBinding result = binding;
+        if (null == result) {
+            synchronized (this) {
+                result = binding;
+                if (null == result) {
+                    result  = new SwitchBankBinding(this);
+                    binding = result;
+                    onDirty = result::request;
+                    if (signalled.get()) { result.request(); }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Hands every dirty word to the consumer and clears the dirty set.
+     * Returns the number of words that were dirty.
+     */
+    int drainDirty(final Consumer CONSUMER) {
+        signalled.set(false);
+        int count = 0;
+        for (int i = 0, n = dirty.length() ; i < n ; i++) {
+            if (0 == dirty.get(i)) { continue; }
+            long changed = dirty.getAndSet(i, 0);
+            if (0 == changed) { continue; }
+            CONSUMER.changed(i << 6, changed, words.get(i));
+            count++;
+        }
+        return count;
+    }
+
+    private void markDirty(final int WORD, final long MASK) {
+        long current;
+        do {
+            current = dirty.get(WORD);
+            if ((current & MASK) == MASK) { break; }
+        } while (!dirty.compareAndSet(WORD, current, current | MASK));
+        if (signalled.compareAndSet(false, true)) {
+            Runnable handler = onDirty;
+            if (null != handler) { handler.run(); }
+        }
+    }
+
+    private long validBits(final int WORD) {
+        int rest = size - (WORD << 6);
+        return rest >= 64 ? -1L : (1L << rest) - 1;
+    }
+
+    private void checkIndex(final int INDEX) {
+        if (INDEX < 0 || INDEX >= size) { throw new IndexOutOfBoundsException("Index: " + INDEX + ", Size: " + size); }
+    }
+
+
+    // ******************** Inner Classes *************************************
+    public interface Listener {
+        /**
+         * Called on the FX thread for a word of 64 switches starting at FROM_INDEX.
+         * CHANGED has a bit set for every switch that changed and VALUES holds
+         * the current state of all 64 switches. BANK.isRestoring() tells if the
+         * change comes from restore().
+         */
+        void changed(SwitchBank bank, int fromIndex, long changed, long values);
+    }
+
+    interface Consumer {
+        void changed(int fromIndex, long changed, long values);
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2018 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.ioswitch;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+
+/**
+ * FX side of a SwitchBank. Drains the dirty words of the bank once per pulse
+ * and pushes them to the bound IosSwitch instances and the bank listeners.
+ */
+final class SwitchBankBinding extends PulseTrigger implements SwitchBank.Consumer {
+    private static final int                                       PAGE_SHIFT = 10;
+    private static final int                                       PAGE_SIZE  = 1 << PAGE_SHIFT;
+    private        final SwitchBank                                bank;
+    private        final CopyOnWriteArrayList<SwitchBank.Listener> listeners;
+    private              IosSwitch[][]                             pages;
+    private              int                                       boundCount;
+    private              boolean                                   snap;
+
+
+    // ******************** Constructors **************************************
+    SwitchBankBinding(final SwitchBank BANK) {
+        bank       = BANK;
+        listeners  = new CopyOnWriteArrayList<>();
+        pages      = new IosSwitch[(BANK.size() + PAGE_SIZE - 1) >>> PAGE_SHIFT][];
+        boundCount = 0;
+    }
+
+
+    // ******************** Methods *******************************************
+    void addListener(final SwitchBank.Listener LISTENER) { listeners.addIfAbsent(LISTENER); }
+    void removeListener(final SwitchBank.Listener LISTENER) { listeners.remove(LISTENER); }
+
+    /** Must be called on the FX thread */
+    void bind(final int INDEX, final IosSwitch SWITCH) {
+        IosSwitch[] page = pages[INDEX >>> PAGE_SHIFT];
+        if (null == page) {
+            page = new IosSwitch[PAGE_SIZE];
+            pages[INDEX >>> PAGE_SHIFT] = page;
+        }
+        if (null == page[INDEX & (PAGE_SIZE - 1)]) { boundCount++; }
+        page[INDEX & (PAGE_SIZE - 1)] = SWITCH;
+    }
+
+    /** Must be called on the FX thread */
+    void unbind(final int INDEX, final IosSwitch SWITCH) {
+        IosSwitch[] page = pages[INDEX >>> PAGE_SHIFT];
+        if (null == page || SWITCH != page[INDEX & (PAGE_SIZE - 1)]) { return; }
+        page[INDEX & (PAGE_SIZE - 1)] = null;
+        boundCount--;
+    }
+
+    @Override protected void pulse(final long now) {
+        snap = bank.takeSnap();
+        bank.setRestoring(snap);
+        try {
+            bank.drainDirty(this);
+        } finally {
+            bank.setRestoring(false);
+        }
+    }
+
+    @Override public void changed(final int FROM_INDEX, final long CHANGED, final long VALUES) {
+        if (boundCount > 0) {
+            long remaining = CHANGED;
+            while (remaining != 0) {
+                int  bit   = Long.numberOfTrailingZeros(remaining);
+                int  index = FROM_INDEX + bit;
+                remaining &= remaining - 1;
+                IosSwitch[] page = pages[index >>> PAGE_SHIFT];
+                if (null == page) { continue; }
+                IosSwitch control = page[index & (PAGE_SIZE - 1)];
+                if (null == control) { continue; }
+                if (snap) {
+                    control.snapSelected((VALUES & (1L << bit)) != 0);
+                } else {
+                    control.applyBankState((VALUES & (1L << bit)) != 0);
+                }
+            }
+        }
+        for (SwitchBank.Listener listener : listeners) { listener.changed(bank, FROM_INDEX, CHANGED, VALUES); }
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2018 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.ioswitch;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+
+/**
+ * Keeps the state of a SwitchBank in a memory mapped file. The file has a
+ * 16 byte header followed by the words of the bank as little endian longs:
+ *
+ * <pre>
+ * int   magic     'IOSW'
+ * short version   1
+ * short reserved  0
+ * int   size      number of switches
+ * int   wordCount (size + 63) / 64
+ * long  words[wordCount]
+ * </pre>
+ *
+ * restore() reads all words in one bulk operation, attach() restores the
+ * bank, or saves it if the file was just created, and then writes every
+ * word that changed to the file once per pulse.
+ * Writes go to the page cache, flush() forces them to the disk.
+ *
+ * <pre>
+ * try (SwitchBankStore store = SwitchBankStore.open(path, bank.size())) {
+ *     store.attach(bank);
+ *     ...
+ * }
+ * </pre>
+ */
+public final class SwitchBankStore implements Closeable {
+    public  static final int                 MAGIC       = 0x494F5357;
+    public  static final short               VERSION     = 1;
+    private static final int                 HEADER_SIZE = 16;
+    private        final FileChannel         channel;
+    private        final MappedByteBuffer    buffer;
+    private        final LongBuffer          words;
+    private        final int                 size;
+    private        final SwitchBank.Listener listener;
+    private              SwitchBank          attached;
+    private              boolean             created;
+
+
+    // ******************** Constructors **************************************
+    private SwitchBankStore(final FileChannel CHANNEL, final int SIZE) throws IOException {
+        final int  WORD_COUNT = (SIZE + 63) >>> 6;
+        final long LENGTH     = HEADER_SIZE + 8L * WORD_COUNT;
+        final long EXISTING   = CHANNEL.size();
+        if (0 != EXISTING && EXISTING != LENGTH) { throw new IOException("Store has " + EXISTING + " bytes, expected " + LENGTH + " for " + SIZE + " switches"); }
+
+        channel = CHANNEL;
+        size    = SIZE;
+        buffer  = CHANNEL.map(FileChannel.MapMode.READ_WRITE, 0, LENGTH);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        created = 0 == EXISTING;
+        if (created) {
+            buffer.putInt(0, MAGIC);
+            buffer.putShort(4, VERSION);
+            buffer.putShort(6, (short) 0);
+            buffer.putInt(8, SIZE);
+            buffer.putInt(12, WORD_COUNT);
+        } else {
+            if (buffer.getInt(0) != MAGIC)        { throw new IOException("Not a switch bank store"); }
+            if (buffer.getShort(4) != VERSION)    { throw new IOException("Unsupported store version " + buffer.getShort(4)); }
+            if (buffer.getInt(8) != SIZE)         { throw new IOException("Store holds " + buffer.getInt(8) + " switches, expected " + SIZE); }
+            if (buffer.getInt(12) != WORD_COUNT)  { throw new IOException("Corrupt store header"); }
+        }
+        // Typed as Buffer and ByteBuffer, Java 9+ overrides position() and slice() covariantly and code compiled against
+        // those overrides fails with NoSuchMethodError on Java 8
+        final ByteBuffer BYTES = buffer;
+        ((Buffer) BYTES).position(HEADER_SIZE);
+        words    = BYTES.slice().order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+        listener = (bank, fromIndex, changed, values) -> write(fromIndex >>> 6, values);
+    }
+
+
+    // ******************** Methods *******************************************
+    /**
+     * Opens the store in the given file or creates it if it doesn't exist.
+     * An existing file must have been written for the same number of switches.
+     */
+    public static SwitchBankStore open(final Path PATH, final int SIZE) throws IOException {
+        if (SIZE < 0) { throw new IllegalArgumentException("Size must not be negative"); }
+        FileChannel channel = FileChannel.open(PATH, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            return new SwitchBankStore(channel, SIZE);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public int size() { return size; }
+
+    /** Reads all words of the store, bits beyond size() are always cleared */
+    public synchronized long[] read() {
+        long[] result = new long[words.capacity()];
+        words.duplicate().get(result);
+        return result;
+    }
+
+    /**
+     * Sets the bank to the state of the store. Bound switches take their state
+     * without animation on the next pulse (see SwitchBank.restore()).
+     */
+    public void restore(final SwitchBank BANK) {
+        checkSize(BANK);
+        BANK.restore(read());
+    }
+
+    /** Writes all words of the bank to the store */
+    public synchronized void save(final SwitchBank BANK) {
+        checkSize(BANK);
+        for (int i = 0, n = BANK.wordCount() ; i < n ; i++) { words.put(i, BANK.getWord(i)); }
+    }
+
+    /**
+     * Restores the bank from the store and saves every change of the bank
+     * from then on. If the file was created by open() it holds no state yet,
+     * the bank is saved to it instead. Only one bank can be attached at a time.
+     */
+    public synchronized void attach(final SwitchBank BANK) {
+        checkSize(BANK);
+        detach();
+        if (created) {
+            save(BANK);
+            created = false;
+        } else {
+            restore(BANK);
+        }
+        attached = BANK;
+        BANK.addListener(listener);
+    }
+
+    public synchronized void detach() {
+        if (null == attached) { return; }
+        attached.removeListener(listener);
+        attached = null;
+    }
+
+    /** Forces the changes to the disk */
+    public synchronized void flush() { buffer.force(); }
+
+    @Override public synchronized void close() throws IOException {
+        detach();
+        buffer.force();
+        channel.close();
+    }
+
+    private synchronized void write(final int WORD_INDEX, final long VALUES) { words.put(WORD_INDEX, VALUES); }
+
+    private void checkSize(final SwitchBank BANK) {
+        if (BANK.size() != size) { throw new IllegalArgumentException("Bank has " + BANK.size() + " switches, store has " + size); }
+    }
+}
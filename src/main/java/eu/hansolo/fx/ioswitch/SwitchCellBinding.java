@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2018 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.ioswitch;
+
+import javafx.beans.InvalidationListener;
+import javafx.beans.value.ObservableValue;
+import javafx.beans.value.WritableValue;
+
+
+/**
+ * Connects the switch of a cell to the boolean of the current row. Binding
+ * another row only moves one listener and snaps the switch to the new state,
+ * only toggles by the user animate and are written back to the row.
+ */
+final class SwitchCellBinding {
+    private final IosSwitch                control;
+    private final InvalidationListener     modelListener;
+    private       ObservableValue<Boolean> model;
+    private       boolean                  updating;
+
+
+    // ******************** Constructors **************************************
+    SwitchCellBinding(final IosSwitch CONTROL) {
+        control       = CONTROL;
+        modelListener = o -> update();
+        control.selectedProperty().addListener(o -> {
+            if (updating || !(model instanceof WritableValue)) { return; }
+            updating = true;
+            try {
+                // The model is an ObservableValue<Boolean>, so a writable model can only take a Boolean
+                @SuppressWarnings("unchecked")
+                WritableValue<Boolean> writable = (WritableValue<Boolean>) model;
+                writable.setValue(control.isSelected());
+            } finally {
+                updating = false;
+            }
+        });
+    }
+
+
+    // ******************** Methods *******************************************
+    /** Binds the switch to the given model or, if it is null, shows the given state */
+    void bind(final ObservableValue<Boolean> MODEL, final Boolean STATE) {
+        if (MODEL != model) {
+            unbind();
+            model = MODEL;
+            if (null != model) { model.addListener(modelListener); }
+        }
+        if (null == model) {
+            snap(STATE);
+        } else {
+            update();
+        }
+    }
+
+    void unbind() {
+        if (null == model) { return; }
+        model.removeListener(modelListener);
+        model = null;
+    }
+
+    private void update() {
+        if (updating || null == model) { return; }
+        snap(model.getValue());
+    }
+
+    private void snap(final Boolean STATE) {
+        updating = true;
+        try {
+            control.snapSelected(null != STATE && STATE);
+        } finally {
+            updating = false;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2018 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.ioswitch;
+
+import javafx.scene.Node;
+
+
+/**
+ * Flight Recorder events along the path from the mouse to the settled
+ * switch. The events themselves are in FlightRecorderEvents, which is only
+ * built if the JDK has jdk.jfr and is loaded by name, so the library builds
+ * and runs without Flight Recorder. Only called when
+ * SwitchMetrics.EVENTS_ENABLED is true.
+ * Events that span several calls are handed back as Object and kept by the
+ * switch until they are committed.
+ */
+final class SwitchEvents {
+    private static final String   RECORDER_CLASS = "eu.hansolo.fx.ioswitch.FlightRecorderEvents";
+    private static final Recorder RECORDER       = loadRecorder();
+
+
+    // ******************** Constructors **************************************
+    private SwitchEvents() {}
+
+
+    // ******************** Methods *******************************************
+    /** Returns false if FlightRecorderEvents is missing or the runtime has no jdk.jfr */
+    static boolean isAvailable() { return null != RECORDER; }
+
+    static Object clickStarted(final Node SWITCH) { return RECORDER.clickStarted(SWITCH); }
+
+    static void clickFinished(final Object EVENT) { RECORDER.clickFinished(EVENT); }
+
+    static Object changeStarted(final Node SWITCH, final boolean SELECTED) { return RECORDER.changeStarted(SWITCH, SELECTED); }
+
+    static void changeFinished(final Object EVENT) { RECORDER.changeFinished(EVENT); }
+
+    static Object animateStarted(final Node SWITCH, final String KIND) { return RECORDER.animateStarted(SWITCH, KIND); }
+
+    static void animateFinished(final Object EVENT, final boolean SNAPPED) { RECORDER.animateFinished(EVENT, SNAPPED); }
+
+    static Object settleStarted(final Node SWITCH, final boolean SELECTED) { return RECORDER.settleStarted(SWITCH, SELECTED); }
+
+    /** SUPERSEDED is true if the switch changed again before the animation of this change finished */
+    static void settled(final Object EVENT, final boolean SUPERSEDED) { RECORDER.settled(EVENT, SUPERSEDED); }
+
+    static void queuedUpdateApplied(final Node SWITCH, final boolean SELECTED, final long QUEUE_TIME, final boolean APPLIED) {
+        RECORDER.queuedUpdateApplied(SWITCH, SELECTED, QUEUE_TIME, APPLIED);
+    }
+
+    private static Recorder loadRecorder() {
+        try {
+            return (Recorder) Class.forName(RECORDER_CLASS).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+
+    // ******************** Inner Classes *************************************
+    /** Starts and commits the events, the started events are null if their type is not enabled */
+    interface Recorder {
+        Object clickStarted(Node switchNode);
+
+        void clickFinished(Object event);
+
+        Object changeStarted(Node switchNode, boolean selected);
+
+        void changeFinished(Object event);
+
+        Object animateStarted(Node switchNode, String kind);
+
+        void animateFinished(Object event, boolean snapped);
+
+        Object settleStarted(Node switchNode, boolean selected);
+
+        void settled(Object event, boolean superseded);
+
+        void queuedUpdateApplied(Node switchNode, boolean selected, long queueTime, boolean applied);
+    }
+}
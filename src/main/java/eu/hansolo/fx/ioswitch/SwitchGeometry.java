@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2018 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.ioswitch;
+
+/**
+ * Geometry of a switch for a given available size. All values are relative
+ * to the top left corner of the switch and are derived from the same ratios
+ * that IosSwitch uses for its shapes, so every renderer looks identical.
+ */
+final class SwitchGeometry {
+            static final double           PREFERRED_WIDTH  = 38;
+            static final double           PREFERRED_HEIGHT = 23;
+            static final double           ASPECT_RATIO     = PREFERRED_HEIGHT / PREFERRED_WIDTH;
+            static final double           KNOB_STRETCH     = 1.2;
+    private static final int              CACHE_SIZE       = 64;
+    private static final SwitchGeometry[] CACHE            = new SwitchGeometry[CACHE_SIZE];
+    private        final double           availableWidth;
+    private        final double           availableHeight;
+                   final double           width;
+                   final double           height;
+                   final double           backgroundArc;
+                   final double           oneWidth;
+                   final double           oneHeight;
+                   final double           oneX;
+                   final double           oneY;
+                   final double           mainWidth;
+                   final double           mainHeight;
+                   final double           mainArc;
+                   final double           mainX;
+                   final double           mainY;
+                   final double           zeroRadius;
+                   final double           zeroCenterX;
+                   final double           zeroCenterY;
+                   final double           zeroStrokeWidth;
+                   final double           knobSize;
+                   final double           knobY;
+                   final double           shadowRadius;
+                   final double           shadowOffsetY;
+
+
+    // ******************** Constructors **************************************
+    private SwitchGeometry(final double AVAILABLE_WIDTH, final double AVAILABLE_HEIGHT, final double WIDTH, final double HEIGHT) {
+        availableWidth  = AVAILABLE_WIDTH;
+        availableHeight = AVAILABLE_HEIGHT;
+        width           = WIDTH;
+        height          = HEIGHT;
+        backgroundArc   = HEIGHT;
+        oneWidth        = HEIGHT * 0.0326087;
+        oneHeight       = HEIGHT * 0.32608696;
+        oneX            = WIDTH * 0.225 - (oneWidth * 0.5);
+        oneY            = (HEIGHT - oneHeight) * 0.5;
+        mainWidth       = WIDTH * 0.93421053;
+        mainHeight      = HEIGHT * 0.89130435;
+        mainArc         = HEIGHT * 0.89130435;
+        mainX           = HEIGHT * 0.05434783;
+        mainY           = HEIGHT * 0.05434783;
+        zeroRadius      = HEIGHT * 0.1413;
+        zeroCenterX     = WIDTH * 0.765;
+        zeroCenterY     = HEIGHT * 0.5;
+        zeroStrokeWidth = HEIGHT * 0.04;
+        knobSize        = HEIGHT * 0.89130435;
+        knobY           = (HEIGHT - knobSize) * 0.5;
+        shadowRadius    = HEIGHT * 0.14;
+        shadowOffsetY   = HEIGHT * 0.065;
+    }
+
+
+    // ******************** Methods *******************************************
+    /**
+     * Returns the geometry of the biggest switch that fits into the given
+     * size while keeping the aspect ratio, or null if the size is empty.
+     * Switches of the same size share their geometry through a small cache,
+     * the geometry is immutable so the cache needs no locking.
+     */
+    static SwitchGeometry fit(final double AVAILABLE_WIDTH, final double AVAILABLE_HEIGHT) {
+        if (AVAILABLE_WIDTH <= 0 || AVAILABLE_HEIGHT <= 0) { return null; }
+        long           bits   = Double.doubleToLongBits(AVAILABLE_WIDTH) * 31 + Double.doubleToLongBits(AVAILABLE_HEIGHT);
+        int            slot   = (int) (bits ^ (bits >>> 32) ^ (bits >>> 17)) & (CACHE_SIZE - 1);
+        SwitchGeometry cached = CACHE[slot];
+        if (null != cached && cached.availableWidth == AVAILABLE_WIDTH && cached.availableHeight == AVAILABLE_HEIGHT) { return cached; }
+
+        double w = AVAILABLE_WIDTH;
+        double h = AVAILABLE_HEIGHT;
+        if (ASPECT_RATIO * w > h) {
+            w = 1 / (ASPECT_RATIO / h);
+        } else if (1 / (ASPECT_RATIO / h) > w) {
+            h = ASPECT_RATIO * w;
+        }
+        SwitchGeometry geometry = new SwitchGeometry(AVAILABLE_WIDTH, AVAILABLE_HEIGHT, w, h);
+        CACHE[slot] = geometry;
+        return geometry;
+    }
+
+    double knobMinX() { return mainX; }
+    double knobMaxX() { return mainX + mainWidth; }
+
+    /**
+     * Returns the x position of the knob for the given position
+     * (0 = left, 1 = right) and width factor (1 = round knob).
+     */
+    double knobX(final double POSITION, final double WIDTH_FACTOR) {
+        return knobMinX() + POSITION * (mainWidth - knobSize * WIDTH_FACTOR);
+    }
+}
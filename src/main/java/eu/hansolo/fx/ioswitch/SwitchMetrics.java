@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) 2018 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.ioswitch;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Optional counters and histograms of the switch activity. The metrics are
+ * enabled with -Deu.hansolo.fx.ioswitch.metrics=true, every call site checks
+ * the constant ENABLED first, so with metrics disabled the JIT removes them
+ * completely. When enabled the metrics are registered as MXBean under
+ * eu.hansolo.fx.ioswitch:type=SwitchMetrics.
+ * The Flight Recorder events of SwitchEvents use the same pattern with
+ * EVENTS_ENABLED, they are enabled with -Deu.hansolo.fx.ioswitch.jfr=true.
+ */
+public final class SwitchMetrics implements SwitchMetricsMXBean {
+    public  static final boolean       ENABLED        = Boolean.getBoolean("eu.hansolo.fx.ioswitch.metrics");
+    public  static final String        OBJECT_NAME    = "eu.hansolo.fx.ioswitch:type=SwitchMetrics";
+    /** Flight Recorder events are opt-in and need a runtime with jdk.jfr, SwitchEvents is only loaded if they are switched on */
+            static final boolean       EVENTS_ENABLED = Boolean.getBoolean("eu.hansolo.fx.ioswitch.jfr") && SwitchEvents.isAvailable();
+    private static final SwitchMetrics INSTANCE       = new SwitchMetrics();
+    private        final LongAdder     toggles;
+    private        final RateMeter     toggleRate;
+    private        final LongAdder     longPresses;
+    private        final Histogram     resizeTime;
+    private        final Histogram     layoutTime;
+
+    static {
+        if (ENABLED) { register(); }
+    }
+
+
+    // ******************** Constructors **************************************
+    private SwitchMetrics() {
+        toggles     = new LongAdder();
+        toggleRate  = new RateMeter();
+        longPresses = new LongAdder();
+        resizeTime  = new Histogram();
+        layoutTime  = new Histogram();
+    }
+
+
+    // ******************** Methods *******************************************
+    public static SwitchMetrics getInstance() { return INSTANCE; }
+
+    /** Registers the MXBean, called automatically when the metrics are enabled */
+    public static synchronized void register() {
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!ManagementFactory.getPlatformMBeanServer().isRegistered(name)) {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, name);
+            }
+        } catch (Exception e) {
+            System.err.println("SwitchMetrics could not be registered: " + e);
+        }
+    }
+
+    static void toggled() {
+        INSTANCE.toggles.increment();
+        INSTANCE.toggleRate.mark();
+    }
+
+    static void longPressed() { INSTANCE.longPresses.increment(); }
+
+    static void resized(final long NANOS) { INSTANCE.resizeTime.record(NANOS); }
+
+    static void laidOut(final long NANOS) { INSTANCE.layoutTime.record(NANOS); }
+
+    @Override public long getToggles() { return toggles.sum(); }
+
+    /** Number of toggles in the last full second */
+    @Override public long getTogglesPerSecond() { return toggleRate.lastSecond(); }
+
+    @Override public long getLongPresses() { return longPresses.sum(); }
+
+    @Override public long getSubmittedUpdates() { return SwitchUpdateQueue.INSTANCE.getSubmitted(); }
+
+    @Override public long getCoalescedUpdates() { return SwitchUpdateQueue.INSTANCE.getCoalesced(); }
+
+    /** Read without synchronization, the value might be slightly outdated when read outside of the FX thread */
+    @Override public int getActiveAnimations() { return SwitchAnimator.INSTANCE.getActiveCount(); }
+
+    @Override public long getResizeCount() { return resizeTime.count(); }
+
+    @Override public double getResizeTimeMean() { return resizeTime.mean(); }
+
+    @Override public double getResizeTimeMax() { return resizeTime.max(); }
+
+    @Override public long[] getResizeTimeHistogram() { return resizeTime.buckets(); }
+
+    @Override public long getLayoutCount() { return layoutTime.count(); }
+
+    @Override public double getLayoutTimeMean() { return layoutTime.mean(); }
+
+    @Override public double getLayoutTimeMax() { return layoutTime.max(); }
+
+    @Override public long[] getLayoutTimeHistogram() { return layoutTime.buckets(); }
+
+    @Override public void reset() {
+        toggles.reset();
+        toggleRate.reset();
+        longPresses.reset();
+        resizeTime.reset();
+        layoutTime.reset();
+        SwitchUpdateQueue.INSTANCE.resetCounters();
+    }
+
+
+    // ******************** Inner Classes *************************************
+    /** Counts events per second, the count of the last full second can be read */
+    static final class RateMeter {
+        private final    AtomicLong second;
+        private final    LongAdder  current;
+        private volatile long       previous;
+
+        RateMeter() {
+            second  = new AtomicLong(System.nanoTime() / 1_000_000_000);
+            current = new LongAdder();
+        }
+
+        void mark() {
+            roll();
+            current.increment();
+        }
+
+        long lastSecond() {
+            roll();
+            return previous;
+        }
+
+        void reset() {
+            second.set(System.nanoTime() / 1_000_000_000);
+            current.reset();
+            previous = 0;
+        }
+
+        private void roll() {
+            long now  = System.nanoTime() / 1_000_000_000;
+            long last = second.get();
+            if (now == last || !second.compareAndSet(last, now)) { return; }
+            previous = now - last > 1 ? 0 : current.sumThenReset();
+            if (now - last > 1) { current.reset(); }
+        }
+    }
+
+    /** Histogram with power of two buckets in microseconds, count, sum and max */
+    static final class Histogram {
+        private static final int             BUCKETS = 32;
+        private        final AtomicLongArray buckets;
+        private        final LongAdder       count;
+        private        final LongAdder       sum;
+        private        final AtomicLong      max;
+
+        Histogram() {
+            buckets = new AtomicLongArray(BUCKETS);
+            count   = new LongAdder();
+            sum     = new LongAdder();
+            max     = new AtomicLong();
+        }
+
+        void record(final long NANOS) {
+            long micros = NANOS / 1_000;
+            buckets.incrementAndGet(Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros)));
+            count.increment();
+            sum.add(NANOS);
+            long current;
+            while (NANOS > (current = max.get()) && !max.compareAndSet(current, NANOS)) { }
+        }
+
+        long count() { return count.sum(); }
+
+        double mean() {
+            long n = count.sum();
+            return 0 == n ? 0 : sum.sum() / (n * 1_000.0);
+        }
+
+        double max() { return max.get() / 1_000.0; }
+
+        long[] buckets() {
+            long[] result = new long[BUCKETS];
+            for (int i = 0 ; i < BUCKETS ; i++) { result[i] = buckets.get(i); }
+            return result;
+        }
+
+        void reset() {
+            for (int i = 0 ; i < BUCKETS ; i++) { buckets.set(i, 0); }
+            count.reset();
+            sum.reset();
+            max.set(0);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2018 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.ioswitch;
+
+/**
+ * JMX view of SwitchMetrics, registered as eu.hansolo.fx.ioswitch:type=SwitchMetrics
+ * when the metrics are enabled. Times are in microseconds.
+ */
+public interface SwitchMetricsMXBean {
+    long getToggles();
+
+    long getTogglesPerSecond();
+
+    long getLongPresses();
+
+    long getSubmittedUpdates();
+
+    long getCoalescedUpdates();
+
+    int getActiveAnimations();
+
+    long getResizeCount();
+
+    double getResizeTimeMean();
+
+    double getResizeTimeMax();
+
+    /** Number of resize() calls per power of two microseconds, index i counts times below 2^i us */
+    long[] getResizeTimeHistogram();
+
+    long getLayoutCount();
+
+    double getLayoutTimeMean();
+
+    double getLayoutTimeMax();
+
+    long[] getLayoutTimeHistogram();
+
+    void reset();
+}
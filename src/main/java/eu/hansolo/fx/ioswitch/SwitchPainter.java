@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2018 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.ioswitch;
+
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.CycleMethod;
+import javafx.scene.paint.LinearGradient;
+import javafx.scene.paint.Paint;
+import javafx.scene.paint.RadialGradient;
+import javafx.scene.paint.Stop;
+
+import static eu.hansolo.fx.ioswitch.SwitchAnimation.BACKGROUND;
+import static eu.hansolo.fx.ioswitch.SwitchAnimation.KNOB_POSITION;
+import static eu.hansolo.fx.ioswitch.SwitchAnimation.KNOB_WIDTH;
+import static eu.hansolo.fx.ioswitch.SwitchAnimation.MAIN_OPACITY;
+import static eu.hansolo.fx.ioswitch.SwitchAnimation.MAIN_SCALE;
+import static eu.hansolo.fx.ioswitch.SwitchAnimation.ONE_OPACITY;
+import static eu.hansolo.fx.ioswitch.SwitchAnimation.ZERO_OPACITY;
+
+
+/**
+ * Draws a switch with the colors of ios-switch.css onto a GraphicsContext.
+ */
+final class SwitchPainter {
+    static  final Color  BACKGROUND_COLOR = Color.rgb(229, 229, 229);
+    static  final Color  SELECTED_COLOR   = Color.rgb(75, 216, 99);
+    static  final Color  KNOB_COLOR       = Color.rgb(255, 255, 255);
+    static  final Color  DARK_MAIN_COLOR  = Color.rgb(0, 0, 0);
+    static  final Color  ONE_COLOR        = Color.rgb(255, 255, 255);
+    static  final Color  ZERO_COLOR       = Color.rgb(175, 175, 175);
+    static  final Paint  BRIGHT_MAIN_FILL = new LinearGradient(0, 0, 1, 0, true, CycleMethod.NO_CYCLE,
+                                                               new Stop(0.35, Color.rgb(244, 244, 244)),
+                                                               new Stop(0.80, Color.rgb(255, 255, 255)));
+    // Gaussian falloff of the knob DropShadow, its radius is a fixed ratio of the knob size
+    private static final double SHADOW_INNER = (0.89130435 * 0.5 - 0.14) / (0.89130435 * 0.5 + 0.14);
+    static  final Paint  KNOB_SHADOW      = new RadialGradient(0, 0, 0.5, 0.5, 0.5, true, CycleMethod.NO_CYCLE,
+                                                               new Stop(SHADOW_INNER, Color.rgb(0, 0, 0, 0.25)),
+                                                               new Stop(SHADOW_INNER + (1 - SHADOW_INNER) * 0.25, Color.rgb(0, 0, 0, 0.22)),
+                                                               new Stop(SHADOW_INNER + (1 - SHADOW_INNER) * 0.50, Color.rgb(0, 0, 0, 0.125)),
+                                                               new Stop(SHADOW_INNER + (1 - SHADOW_INNER) * 0.75, Color.rgb(0, 0, 0, 0.03)),
+                                                               new Stop(1.0, Color.TRANSPARENT));
+
+
+    // ******************** Constructors **************************************
+    private SwitchPainter() {}
+
+
+    // ******************** Methods *******************************************
+    /**
+     * Paints the switch described by the given channel values (see SwitchAnimation)
+     * with its top left corner at X, Y.
+     */
+    static void paint(final GraphicsContext CTX, final SwitchGeometry GEOMETRY, final double X, final double Y, final double[] CHANNELS,
+                      final boolean DARK, final boolean SHOW_ON_OFF_TEXT, final Color BACKGROUND_FILL, final Color SELECTED_FILL,
+                      final Color KNOB_FILL, final Color DARK_MAIN_FILL) {
+        final SwitchGeometry G = GEOMETRY;
+
+        CTX.save();
+        CTX.translate(X, Y);
+
+        // Background area
+        CTX.setFill(BACKGROUND_FILL.interpolate(SELECTED_FILL, CHANNELS[BACKGROUND]));
+        CTX.fillRoundRect(0, 0, G.width, G.height, G.backgroundArc, G.backgroundArc);
+
+        // One
+        if (SHOW_ON_OFF_TEXT && CHANNELS[ONE_OPACITY] > 0) {
+            CTX.setGlobalAlpha(CHANNELS[ONE_OPACITY]);
+            CTX.setFill(ONE_COLOR);
+            CTX.fillRect(G.oneX, G.oneY, G.oneWidth, G.oneHeight);
+            CTX.setGlobalAlpha(1);
+        }
+
+        // Main area, scaled around its center
+        double mainScale = CHANNELS[MAIN_SCALE];
+        if (mainScale > 0 && CHANNELS[MAIN_OPACITY] > 0) {
+            double mainWidth  = G.mainWidth * mainScale;
+            double mainHeight = G.mainHeight * mainScale;
+            double mainArc    = G.mainArc * mainScale;
+            CTX.setGlobalAlpha(CHANNELS[MAIN_OPACITY]);
+            CTX.setFill(DARK ? DARK_MAIN_FILL : BRIGHT_MAIN_FILL);
+            CTX.fillRoundRect(G.mainX + (G.mainWidth - mainWidth) * 0.5, G.mainY + (G.mainHeight - mainHeight) * 0.5, mainWidth, mainHeight, mainArc, mainArc);
+            CTX.setGlobalAlpha(1);
+        }
+
+        // Zero
+        if (SHOW_ON_OFF_TEXT && CHANNELS[ZERO_OPACITY] > 0) {
+            CTX.setGlobalAlpha(CHANNELS[ZERO_OPACITY]);
+            CTX.setStroke(ZERO_COLOR);
+            CTX.setLineWidth(G.zeroStrokeWidth);
+            CTX.strokeOval(G.zeroCenterX - G.zeroRadius, G.zeroCenterY - G.zeroRadius, G.zeroRadius * 2, G.zeroRadius * 2);
+            CTX.setGlobalAlpha(1);
+        }
+
+        // Knob, the shadow is a pre-blurred gradient because an Effect on the GraphicsContext is too expensive per switch
+        double knobX     = G.knobX(CHANNELS[KNOB_POSITION], CHANNELS[KNOB_WIDTH]);
+        double knobWidth = G.knobSize * CHANNELS[KNOB_WIDTH];
+        CTX.setFill(KNOB_SHADOW);
+        CTX.fillRoundRect(knobX - G.shadowRadius, G.knobY - G.shadowRadius + G.shadowOffsetY, knobWidth + 2 * G.shadowRadius, G.knobSize + 2 * G.shadowRadius,
+                          G.knobSize + 2 * G.shadowRadius, G.knobSize + 2 * G.shadowRadius);
+        CTX.setFill(KNOB_FILL);
+        CTX.fillRoundRect(knobX, G.knobY, knobWidth, G.knobSize, G.knobSize, G.knobSize);
+
+        CTX.restore();
+    }
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright (c) 2018 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.ioswitch;
+
+import javafx.scene.paint.LinearGradient;
+import javafx.scene.paint.RadialGradient;
+import javafx.scene.paint.Stop;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.LinearGradientPaint;
+import java.awt.RadialGradientPaint;
+import java.awt.RenderingHints;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.geom.RoundRectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+
+/**
+ * Renders switch states into BufferedImages without JavaFX, e.g. for reports
+ * on a server. The switch is drawn with Java2D in the geometry of IosSwitch
+ * and the colors of ios-switch.css (the knob shadow is the pre-blurred
+ * gradient of SwitchPainter). Only the two resting images are rendered,
+ * sheets of many switches are composed from them in parallel on a
+ * ForkJoinPool, one task per band of rows, into a pixel buffer that can be
+ * reused for every page.
+ *
+ * <pre>
+ * SwitchRasterizer rasterizer = new SwitchRasterizer(38, 23, 2, false, false, null);
+ * BufferedImage    page       = rasterizer.createSheet(10_000, 100, 4);
+ * for (int from = 0 ; from < bank.size() ; from += 10_000) {
+ *     rasterizer.render(words, from, 10_000, 100, 4, page);
+ *     ImageIO.write(page, "png", ...);
+ * }
+ * </pre>
+ */
+public final class SwitchRasterizer {
+    private static final int            ROWS_PER_TASK = 8;
+    private        final SwitchGeometry geometry;
+    private        final double         scale;
+    private        final int            padding;
+    private        final int            cellWidth;
+    private        final int            cellHeight;
+    private        final int[]          selectedPixels;
+    private        final int[]          deselectedPixels;
+
+
+    // ******************** Constructors **************************************
+    /**
+     * @param WIDTH            width of a switch, the height follows from the aspect ratio of IosSwitch
+     * @param HEIGHT           height of a switch
+     * @param SCALE            pixels per unit, e.g. 2 for print
+     * @param DARK             dark scheme of ios-switch.css
+     * @param SHOW_ON_OFF_TEXT draws the one and zero symbols
+     * @param SELECTED_COLOR   background of a selected switch, null for the default
+     */
+    public SwitchRasterizer(final double WIDTH, final double HEIGHT, final double SCALE, final boolean DARK, final boolean SHOW_ON_OFF_TEXT,
+                            final javafx.scene.paint.Color SELECTED_COLOR) {
+        if (SCALE <= 0) { throw new IllegalArgumentException("Scale must be positive"); }
+        geometry = SwitchGeometry.fit(WIDTH, HEIGHT);
+        if (null == geometry) { throw new IllegalArgumentException("Size must be positive"); }
+        scale            = SCALE;
+        // The knob shadow reaches below the switch
+        padding          = (int) Math.ceil(Math.max(0, geometry.knobY + geometry.knobSize + geometry.shadowRadius + geometry.shadowOffsetY - geometry.height) * SCALE);
+        cellWidth        = (int) Math.ceil(geometry.width * SCALE) + 2 * padding;
+        cellHeight       = (int) Math.ceil(geometry.height * SCALE) + 2 * padding;
+        selectedPixels   = paint(true, DARK, SHOW_ON_OFF_TEXT, null == SELECTED_COLOR ? SwitchPainter.SELECTED_COLOR : SELECTED_COLOR);
+        deselectedPixels = paint(false, DARK, SHOW_ON_OFF_TEXT, null == SELECTED_COLOR ? SwitchPainter.SELECTED_COLOR : SELECTED_COLOR);
+    }
+
+
+    // ******************** Methods *******************************************
+    /** Width of the image of one switch including the room for the shadow */
+    public int getCellWidth() { return cellWidth; }
+
+    public int getCellHeight() { return cellHeight; }
+
+    /** Returns a new image of one switch */
+    public BufferedImage render(final boolean SELECTED) {
+        BufferedImage image = new BufferedImage(cellWidth, cellHeight, BufferedImage.TYPE_INT_ARGB);
+        image.getRaster().setDataElements(0, 0, cellWidth, cellHeight, SELECTED ? selectedPixels : deselectedPixels);
+        return image;
+    }
+
+    /** Creates an image for COUNT switches in COLUMNS columns with SPACING pixels between them */
+    public BufferedImage createSheet(final int COUNT, final int COLUMNS, final int SPACING) {
+        return new BufferedImage(sheetWidth(COLUMNS, SPACING), Math.max(1, sheetHeight(COUNT, COLUMNS, SPACING)), BufferedImage.TYPE_INT_ARGB);
+    }
+
+    public void render(final SwitchBank BANK, final int FROM_INDEX, final int COUNT, final int COLUMNS, final int SPACING, final BufferedImage TARGET) {
+        render(BANK.toLongArray(), FROM_INDEX, COUNT, COLUMNS, SPACING, TARGET);
+    }
+    /**
+     * Draws the switches FROM_INDEX to FROM_INDEX + COUNT of the packed states
+     * (64 switches per long like SwitchBank) row by row into the target,
+     * which must be a TYPE_INT_ARGB image of at least the size of
+     * createSheet(). Everything else in the target is cleared.
+     */
+    public void render(final long[] STATES, final int FROM_INDEX, final int COUNT, final int COLUMNS, final int SPACING, final BufferedImage TARGET) {
+        render(STATES, FROM_INDEX, COUNT, COLUMNS, SPACING, TARGET, ForkJoinPool.commonPool());
+    }
+    public void render(final long[] STATES, final int FROM_INDEX, final int COUNT, final int COLUMNS, final int SPACING, final BufferedImage TARGET,
+                       final ForkJoinPool POOL) {
+        if (BufferedImage.TYPE_INT_ARGB != TARGET.getType()) { throw new IllegalArgumentException("Target must be TYPE_INT_ARGB"); }
+        if (COLUMNS < 1 || SPACING < 0 || COUNT < 0)         { throw new IllegalArgumentException("Invalid layout"); }
+        if (FROM_INDEX < 0 || FROM_INDEX + COUNT > STATES.length * 64L) { throw new IndexOutOfBoundsException("Switches " + FROM_INDEX + " - " + (FROM_INDEX + COUNT)); }
+        if (sheetWidth(COLUMNS, SPACING) > TARGET.getWidth() || sheetHeight(COUNT, COLUMNS, SPACING) > TARGET.getHeight()) {
+            throw new IllegalArgumentException("Target is too small");
+        }
+        int[] pixels = ((DataBufferInt) TARGET.getRaster().getDataBuffer()).getData();
+        int   rows   = TARGET.getHeight() / (cellHeight + SPACING) + 1;
+        POOL.invoke(new Band(STATES, FROM_INDEX, COUNT, COLUMNS, SPACING, pixels, TARGET.getWidth(), TARGET.getHeight(), 0, rows));
+    }
+
+    private int sheetWidth(final int COLUMNS, final int SPACING) { return COLUMNS * (cellWidth + SPACING) - SPACING; }
+
+    private int sheetHeight(final int COUNT, final int COLUMNS, final int SPACING) {
+        int rows = (COUNT + COLUMNS - 1) / COLUMNS;
+        return rows * (cellHeight + SPACING) - SPACING;
+    }
+
+    private int[] paint(final boolean SELECTED, final boolean DARK, final boolean SHOW_ON_OFF_TEXT, final javafx.scene.paint.Color SELECTED_COLOR) {
+        final SwitchGeometry G     = geometry;
+        BufferedImage        image = new BufferedImage(cellWidth, cellHeight, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D           g     = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+        g.translate(padding, padding);
+        g.scale(scale, scale);
+
+        // Background area
+        g.setColor(awt(SELECTED ? SELECTED_COLOR : SwitchPainter.BACKGROUND_COLOR));
+        g.fill(new RoundRectangle2D.Double(0, 0, G.width, G.height, G.backgroundArc, G.backgroundArc));
+
+        // One
+        if (SHOW_ON_OFF_TEXT && SELECTED) {
+            g.setColor(awt(SwitchPainter.ONE_COLOR));
+            g.fill(new Rectangle2D.Double(G.oneX, G.oneY, G.oneWidth, G.oneHeight));
+        }
+
+        // Main area, only visible on a deselected switch
+        if (!SELECTED) {
+            if (DARK) {
+                g.setColor(awt(SwitchPainter.DARK_MAIN_COLOR));
+            } else {
+                List<Stop> stops = ((LinearGradient) SwitchPainter.BRIGHT_MAIN_FILL).getStops();
+                g.setPaint(new LinearGradientPaint((float) G.mainX, 0, (float) (G.mainX + G.mainWidth), 0, fractions(stops), colors(stops)));
+            }
+            g.fill(new RoundRectangle2D.Double(G.mainX, G.mainY, G.mainWidth, G.mainHeight, G.mainArc, G.mainArc));
+        }
+
+        // Zero
+        if (SHOW_ON_OFF_TEXT && !SELECTED) {
+            g.setColor(awt(SwitchPainter.ZERO_COLOR));
+            g.setStroke(new BasicStroke((float) G.zeroStrokeWidth));
+            g.draw(new Ellipse2D.Double(G.zeroCenterX - G.zeroRadius, G.zeroCenterY - G.zeroRadius, G.zeroRadius * 2, G.zeroRadius * 2));
+        }
+
+        // Knob with the same pre-blurred shadow as SwitchPainter
+        double     knobX  = G.knobX(SELECTED ? 1 : 0, 1);
+        double     radius = G.knobSize * 0.5 + G.shadowRadius;
+        List<Stop> stops  = ((RadialGradient) SwitchPainter.KNOB_SHADOW).getStops();
+        g.setPaint(new RadialGradientPaint((float) (knobX + G.knobSize * 0.5), (float) (G.knobY + G.knobSize * 0.5 + G.shadowOffsetY), (float) radius,
+                                           fractions(stops), colors(stops)));
+        g.fill(new Ellipse2D.Double(knobX + G.knobSize * 0.5 - radius, G.knobY + G.knobSize * 0.5 + G.shadowOffsetY - radius, radius * 2, radius * 2));
+        g.setColor(awt(SwitchPainter.KNOB_COLOR));
+        g.fill(new Ellipse2D.Double(knobX, G.knobY, G.knobSize, G.knobSize));
+        g.dispose();
+
+        return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    }
+
+    private static Color awt(final javafx.scene.paint.Color COLOR) {
+        return new Color((float) COLOR.getRed(), (float) COLOR.getGreen(), (float) COLOR.getBlue(), (float) COLOR.getOpacity());
+    }
+
+    private static float[] fractions(final List<Stop> STOPS) {
+        float[] fractions = new float[STOPS.size()];
+        for (int i = 0 ; i < fractions.length ; i++) { fractions[i] = (float) STOPS.get(i).getOffset(); }
+        return fractions;
+    }
+
+    private static Color[] colors(final List<Stop> STOPS) {
+        Color[] colors = new Color[STOPS.size()];
+        for (int i = 0 ; i < colors.length ; i++) { colors[i] = awt(STOPS.get(i).getColor()); }
+        return colors;
+    }
+
+
+    // ******************** Inner Classes *************************************
+    /** Copies the rows FROM_ROW to TO_ROW of switches into the pixel buffer */
+    private final class Band extends RecursiveAction {
+        private static final long   serialVersionUID = 1L;
+        private        final long[] states;
+        private        final int    fromIndex;
+        private        final int    count;
+        private        final int    columns;
+        private        final int    spacing;
+        private        final int[]  pixels;
+        private        final int    width;
+        private        final int    height;
+        private        final int    fromRow;
+        private        final int    toRow;
+
+        Band(final long[] STATES, final int FROM_INDEX, final int COUNT, final int COLUMNS, final int SPACING, final int[] PIXELS, final int WIDTH,
+             final int HEIGHT, final int FROM_ROW, final int TO_ROW) {
+            states    = STATES;
+            fromIndex = FROM_INDEX;
+            count     = COUNT;
+            columns   = COLUMNS;
+            spacing   = SPACING;
+            pixels    = PIXELS;
+            width     = WIDTH;
+            height    = HEIGHT;
+            fromRow   = FROM_ROW;
+            toRow     = TO_ROW;
+        }
+
+        @Override protected void compute() {
+            if (toRow - fromRow > ROWS_PER_TASK) {
+                int middle = (fromRow + toRow) >>> 1;
+                invokeAll(new Band(states, fromIndex, count, columns, spacing, pixels, width, height, fromRow, middle),
+                          new Band(states, fromIndex, count, columns, spacing, pixels, width, height, middle, toRow));
+                return;
+            }
+            for (int row = fromRow ; row < toRow ; row++) {
+                int top    = row * (cellHeight + spacing);
+                int bottom = Math.min(height, top + cellHeight + spacing);
+                if (top >= height) { return; }
+                for (int y = top ; y < bottom ; y++) {
+                    int line   = y * width;
+                    int cellY  = y - top;
+                    int x      = 0;
+                    for (int column = 0 ; column < columns ; column++) {
+                        int index = row * columns + column;
+                        if (index >= count || cellY >= cellHeight) { break; }
+                        int     switchIndex = fromIndex + index;
+                        boolean selected    = (states[switchIndex >>> 6] & (1L << switchIndex)) != 0;
+                        System.arraycopy(selected ? selectedPixels : deselectedPixels, cellY * cellWidth, pixels, line + x, cellWidth);
+                        x += cellWidth;
+                        if (column < columns - 1) {
+                            Arrays.fill(pixels, line + x, Math.min(line + width, line + x + spacing), 0);
+                            x += spacing;
+                        }
+                    }
+                    Arrays.fill(pixels, line + Math.min(x, width), line + width, 0);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2018 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.ioswitch;
+
+import javafx.geometry.Insets;
+import javafx.scene.paint.Color;
+
+import java.util.Arrays;
+
+
+/**
+ * Configuration of an IosSwitch that is kept until the switch is showing.
+ * Every setting is a Key, numbers and flags are stored in primitive fields
+ * and a bit mask remembers which settings were made, so recording a setting
+ * allocates nothing and applying them is a single pass over the mask.
+ */
+final class SwitchSettings {
+    enum Key {
+        // double values
+        PREF_WIDTH, PREF_HEIGHT, MIN_WIDTH, MIN_HEIGHT, MAX_WIDTH, MAX_HEIGHT,
+        SCALE_X, SCALE_Y, LAYOUT_X, LAYOUT_Y, TRANSLATE_X, TRANSLATE_Y, DURATION,
+        // object values
+        PADDING, SELECTED_COLOR,
+        // boolean values, SELECTED has to be the last key so it is applied after all other settings
+        DARK, SHOW_ON_OFF_TEXT, SELECTED;
+
+        final int mask = 1 << ordinal();
+    }
+    private static final Key[]    KEYS          = Key.values();
+    private static final int      DOUBLE_COUNT  = Key.DURATION.ordinal() + 1;
+    private static final int      OBJECT_OFFSET = Key.PADDING.ordinal();
+    private static final int      OBJECT_COUNT  = Key.SELECTED_COLOR.ordinal() + 1 - OBJECT_OFFSET;
+    private        final double[] values;
+    private              Object[] objects;
+    private              int      set;
+    private              int      flags;
+
+
+    // ******************** Constructors **************************************
+    SwitchSettings() {
+        values = new double[DOUBLE_COUNT];
+        set    = 0;
+        flags  = 0;
+    }
+
+
+    // ******************** Methods *******************************************
+    boolean isEmpty() { return 0 == set; }
+
+    boolean contains(final Key KEY) { return (set & KEY.mask) != 0; }
+
+    void put(final Key KEY, final double VALUE) {
+        values[KEY.ordinal()] = VALUE;
+        set |= KEY.mask;
+    }
+
+    void put(final Key KEY, final boolean VALUE) {
+        flags = VALUE ? flags | KEY.mask : flags & ~KEY.mask;
+        set  |= KEY.mask;
+    }
+
+    void put(final Key KEY, final Object VALUE) {
+        if (null == objects) { objects = new Object[OBJECT_COUNT]; }
+        objects[KEY.ordinal() - OBJECT_OFFSET] = VALUE;
+        set |= KEY.mask;
+    }
+
+    double getDouble(final Key KEY) { return values[KEY.ordinal()]; }
+
+    boolean getBoolean(final Key KEY) { return (flags & KEY.mask) != 0; }
+
+    Object getObject(final Key KEY) { return null == objects ? null : objects[KEY.ordinal() - OBJECT_OFFSET]; }
+
+    /** Copies all settings of OTHER into these settings, settings of OTHER win */
+    void putAll(final SwitchSettings OTHER) {
+        int remaining = OTHER.set;
+        while (remaining != 0) {
+            Key key = KEYS[Integer.numberOfTrailingZeros(remaining)];
+            remaining &= remaining - 1;
+            if (key.ordinal() < DOUBLE_COUNT) {
+                put(key, OTHER.getDouble(key));
+            } else if (key.ordinal() < OBJECT_OFFSET + OBJECT_COUNT) {
+                put(key, OTHER.getObject(key));
+            } else {
+                put(key, OTHER.getBoolean(key));
+            }
+        }
+    }
+
+    void clear() {
+        set   = 0;
+        flags = 0;
+        if (null != objects) { Arrays.fill(objects, null); }
+    }
+
+    /** Applies all settings in the order of their keys and clears them */
+    void applyTo(final IosSwitch CONTROL) {
+        int remaining = set;
+        while (remaining != 0) {
+            Key key = KEYS[Integer.numberOfTrailingZeros(remaining)];
+            remaining &= remaining - 1;
+            switch(key) {
+                case PREF_WIDTH      : CONTROL.setPrefWidth(getDouble(key)); break;
+                case PREF_HEIGHT     : CONTROL.setPrefHeight(getDouble(key)); break;
+                case MIN_WIDTH       : CONTROL.setMinWidth(getDouble(key)); break;
+                case MIN_HEIGHT      : CONTROL.setMinHeight(getDouble(key)); break;
+                case MAX_WIDTH       : CONTROL.setMaxWidth(getDouble(key)); break;
+                case MAX_HEIGHT      : CONTROL.setMaxHeight(getDouble(key)); break;
+                case SCALE_X         : CONTROL.setScaleX(getDouble(key)); break;
+                case SCALE_Y         : CONTROL.setScaleY(getDouble(key)); break;
+                case LAYOUT_X        : CONTROL.setLayoutX(getDouble(key)); break;
+                case LAYOUT_Y        : CONTROL.setLayoutY(getDouble(key)); break;
+                case TRANSLATE_X     : CONTROL.setTranslateX(getDouble(key)); break;
+                case TRANSLATE_Y     : CONTROL.setTranslateY(getDouble(key)); break;
+                case DURATION        : CONTROL.setDuration(getDouble(key)); break;
+                case PADDING         : CONTROL.setPadding((Insets) getObject(key)); break;
+                case SELECTED_COLOR  : CONTROL.setSelectedColor((Color) getObject(key)); break;
+                case DARK            : CONTROL.setDark(getBoolean(key)); break;
+                case SHOW_ON_OFF_TEXT: CONTROL.setShowOnOffText(getBoolean(key)); break;
+                case SELECTED        : CONTROL.setSelected(getBoolean(key)); break;
+            }
+        }
+        clear();
+    }
+}
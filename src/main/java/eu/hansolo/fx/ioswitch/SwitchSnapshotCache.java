@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2018 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.ioswitch;
+
+import javafx.scene.image.Image;
+import javafx.scene.layout.Background;
+import javafx.scene.layout.Border;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.Paint;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+
+/**
+ * Images of idle switches, shared by all switches that look the same. The
+ * cache is bounded and evicts the least recently used image, switches that
+ * need a new image are collected and refreshed together on the next pulse.
+ * Must only be used on the FX thread.
+ */
+final class SwitchSnapshotCache extends PulseTrigger {
+    static  final SwitchSnapshotCache    INSTANCE         = new SwitchSnapshotCache();
+    static  final int                    DEFAULT_MAX_SIZE = 256;
+    private final Map<Key, Entry>        entries;
+    private final List<IosSwitch>        pending;
+    private       int                    maxSize;
+    private       long                   hits;
+    private       long                   misses;
+
+
+    // ******************** Constructors **************************************
+    private SwitchSnapshotCache() {
+        maxSize = DEFAULT_MAX_SIZE;
+        pending = new ArrayList<>();
+        entries = new LinkedHashMap<Key, Entry>(64, 0.75f, true) {
+            @Override protected boolean removeEldestEntry(final Map.Entry<Key, SwitchSnapshotCache.Entry> ELDEST) { return size() > maxSize; }
+        };
+    }
+
+
+    // ******************** Methods *******************************************
+    /** Refreshes the image of the given switch on the next pulse */
+    void refresh(final IosSwitch CONTROL) {
+        if (CONTROL.snapshotQueued) { return; }
+        CONTROL.snapshotQueued = true;
+        pending.add(CONTROL);
+        request();
+    }
+
+    /** Forgets a pending refresh, e.g. when the switch is disposed */
+    void remove(final IosSwitch CONTROL) {
+        if (!CONTROL.snapshotQueued) { return; }
+        CONTROL.snapshotQueued = false;
+        pending.remove(CONTROL);
+    }
+
+    @Override protected void pulse(final long now) {
+        for (int i = 0 ; i < pending.size() ; i++) {
+            IosSwitch control = pending.get(i);
+            control.snapshotQueued = false;
+            control.refreshSnapshot();
+        }
+        pending.clear();
+    }
+
+    Entry get(final Key KEY) {
+        Entry entry = entries.get(KEY);
+        if (null == entry) { misses++; } else { hits++; }
+        return entry;
+    }
+
+    void put(final Key KEY, final Entry ENTRY) { entries.put(KEY, ENTRY); }
+
+    int size() { return entries.size(); }
+
+    int getMaxSize() { return maxSize; }
+    void setMaxSize(final int MAX_SIZE) {
+        if (MAX_SIZE < 0) { throw new IllegalArgumentException("Max size must not be negative: " + MAX_SIZE); }
+        maxSize = MAX_SIZE;
+        if (entries.size() <= maxSize) { return; }
+        int excess = entries.size() - maxSize;
+        for (Iterator<Key> i = entries.keySet().iterator() ; excess > 0 ; excess--) {
+            i.next();
+            i.remove();
+        }
+    }
+
+    long getHits() { return hits; }
+
+    long getMisses() { return misses; }
+
+    void clear() {
+        entries.clear();
+        hits   = 0;
+        misses = 0;
+    }
+
+
+    // ******************** Inner Classes *************************************
+    /** Everything that changes the look of an idle switch */
+    static final class Key {
+        private final double               width;
+        private final double               height;
+        private final double               offsetX;
+        private final double               offsetY;
+        private final double               scale;
+        private final boolean              selected;
+        private final boolean              dark;
+        private final boolean              showOnOffText;
+        private final Color                backgroundColor;
+        private final Color                selectedColor;
+        private final Paint                knobFill;
+        private final Paint                mainFill;
+        private final Background           background;
+        private final Border               border;
+        private final IosSwitch.KnobShadow knobShadow;
+        private final int                  hash;
+
+        Key(final SwitchGeometry GEOMETRY, final double OFFSET_X, final double OFFSET_Y, final double SCALE, final boolean SELECTED, final boolean DARK,
+            final boolean SHOW_ON_OFF_TEXT, final Color BACKGROUND_COLOR, final Color SELECTED_COLOR, final Paint KNOB_FILL, final Paint MAIN_FILL,
+            final Background BACKGROUND, final Border BORDER, final IosSwitch.KnobShadow KNOB_SHADOW) {
+            width           = GEOMETRY.width;
+            height          = GEOMETRY.height;
+            offsetX         = OFFSET_X;
+            offsetY         = OFFSET_Y;
+            scale           = SCALE;
+            selected        = SELECTED;
+            dark            = DARK;
+            showOnOffText   = SHOW_ON_OFF_TEXT;
+            backgroundColor = BACKGROUND_COLOR;
+            selectedColor   = SELECTED_COLOR;
+            knobFill        = KNOB_FILL;
+            mainFill        = MAIN_FILL;
+            background      = BACKGROUND;
+            border          = BORDER;
+            knobShadow      = KNOB_SHADOW;
+            hash            = Objects.hash(width, height, offsetX, offsetY, scale, selected, dark, showOnOffText, backgroundColor, selectedColor, knobFill, mainFill, background, border,
+                                           knobShadow);
+        }
+
+        @Override public boolean equals(final Object OBJECT) {
+            if (this == OBJECT) { return true; }
+            if (!(OBJECT instanceof Key)) { return false; }
+            Key other = (Key) OBJECT;
+            return hash == other.hash && width == other.width && height == other.height && offsetX == other.offsetX && offsetY == other.offsetY &&
+                   scale == other.scale && selected == other.selected && dark == other.dark && showOnOffText == other.showOnOffText &&
+                   Objects.equals(backgroundColor, other.backgroundColor) && Objects.equals(selectedColor, other.selectedColor) && Objects.equals(knobFill, other.knobFill) &&
+                   Objects.equals(mainFill, other.mainFill) && Objects.equals(background, other.background) && Objects.equals(border, other.border) &&
+                   knobShadow == other.knobShadow;
+        }
+
+        @Override public int hashCode() { return hash; }
+    }
+
+    /** The image and where it is placed in the local coordinates of the switch */
+    static final class Entry {
+        final Image  image;
+        final double x;
+        final double y;
+        final double width;
+        final double height;
+
+        Entry(final Image IMAGE, final double X, final double Y, final double WIDTH, final double HEIGHT) {
+            image  = IMAGE;
+            x      = X;
+            y      = Y;
+            width  = WIDTH;
+            height = HEIGHT;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2018 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.ioswitch;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Collects the states requested by IosSwitch.setSelectedLater() from any
+ * thread. Every switch only keeps the latest requested state and is queued
+ * at most once between two pulses, the queue is drained once per pulse on
+ * the FX thread.
+ */
+final class SwitchUpdateQueue extends PulseTrigger {
+            static final SwitchUpdateQueue                    INSTANCE = new SwitchUpdateQueue();
+            static final int                                  NONE     = 0;
+            static final int                                  OFF      = 1;
+            static final int                                  ON       = 2;
+    private static final AtomicIntegerFieldUpdater<IosSwitch> PENDING  = AtomicIntegerFieldUpdater.newUpdater(IosSwitch.class, "pendingState");
+    private        final ConcurrentLinkedQueue<IosSwitch>     queue;
+    private        final LongAdder                            submitted;
+    private        final LongAdder                            coalesced;
+
+
+    // ******************** Constructors **************************************
+    private SwitchUpdateQueue() {
+        queue     = new ConcurrentLinkedQueue<>();
+        submitted = new LongAdder();
+        coalesced = new LongAdder();
+    }
+
+
+    // ******************** Methods *******************************************
+    void submit(final IosSwitch SWITCH, final boolean SELECTED) {
+        submitted.increment();
+        if (NONE == PENDING.getAndSet(SWITCH, SELECTED ? ON : OFF)) {
+            if (SwitchMetrics.EVENTS_ENABLED) { SWITCH.pendingSince = System.nanoTime(); }
+            queue.offer(SWITCH);
+            request();
+        } else {
+            // Replaced a state that was not applied yet
+            coalesced.increment();
+        }
+    }
+
+    /** Drops the pending state of the switch, e.g. when it is disposed. Must be called on the FX thread */
+    void remove(final IosSwitch SWITCH) {
+        if (NONE != PENDING.getAndSet(SWITCH, NONE)) { queue.remove(SWITCH); }
+    }
+
+    long getSubmitted() { return submitted.sum(); }
+
+    long getCoalesced() { return coalesced.sum(); }
+
+    void resetCounters() {
+        submitted.reset();
+        coalesced.reset();
+    }
+
+    @Override protected void pulse(final long now) {
+        IosSwitch control;
+        while (null != (control = queue.poll())) {
+            int state = PENDING.getAndSet(control, NONE);
+            // Removed after it was queued, e.g. by a submit that raced with dispose()
+            if (NONE == state) { continue; }
+            boolean selected = ON == state;
+            boolean applied  = control.applyPendingState(selected);
+            // Flips that cancelled out since the last pulse
+            if (!applied) { coalesced.increment(); }
+            if (SwitchMetrics.EVENTS_ENABLED) { SwitchEvents.queuedUpdateApplied(control, selected, System.nanoTime() - control.pendingSince, applied); }
+        }
+    }
+}
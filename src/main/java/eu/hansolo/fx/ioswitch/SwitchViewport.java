@@ -0,0 +1,272 @@
+/*
+ * Copyright (c) 2018 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.ioswitch;
+
+import javafx.animation.AnimationTimer;
+import javafx.beans.InvalidationListener;
+import javafx.beans.Observable;
+import javafx.beans.property.ReadOnlyProperty;
+import javafx.geometry.Bounds;
+import javafx.scene.Node;
+import javafx.scene.Scene;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Keeps track of the switches that skipped work while they were hidden
+ * (outside of the scene, clipped away e.g. by a ScrollPane, below an
+ * invisible parent like the content of a hidden tab or in a window that
+ * isn't showing). Nothing is polled: switches whose position changed and
+ * all switches below a parent that became visible are checked on the next
+ * pulse, a resized scene checks all hidden switches within a small time
+ * budget per pulse. A clip that grows without a move or a resized scene is
+ * noticed with the next move. A switch that is visible again snaps to its
+ * latest state. The timer only runs while there are switches to check, an
+ * idle scene gets no extra pulses. Switches that are tracked here are known to be hidden, the
+ * result of a visible switch is kept until the next pulse, so a switch that
+ * changes its state several times walks its parents at most once per pulse.
+ * Must only be used on the FX thread.
+ */
+final class SwitchViewport extends AnimationTimer {
+            static final SwitchViewport            INSTANCE     = new SwitchViewport();
+    private static final long                      SWEEP_BUDGET = 250_000;
+    private              IosSwitch[]               hidden;
+    private              int                       hiddenCount;
+    private              IosSwitch[]               moved;
+    private              int                       movedCount;
+    private              int                       cursor;
+    private              int                       sweepLeft;
+    private              boolean                   running;
+    private              long                      pulse;
+    private        final PulseTrigger              nextPulse;
+    private        final Map<Node, Set<IosSwitch>> parked;
+    private        final InvalidationListener      parentShown;
+    private        final InvalidationListener      sceneResized;
+    private        final Map<Scene, Boolean>       resizeWatched;
+    private        final LongAdder                 skippedAnimations;
+    private        final LongAdder                 skippedResizes;
+    private        final LongAdder                 reveals;
+
+
+    // ******************** Constructors **************************************
+    private SwitchViewport() {
+        hidden            = new IosSwitch[64];
+        moved             = new IosSwitch[64];
+        nextPulse         = new PulseTrigger() {
+            @Override protected void pulse(final long now) { pulse++; }
+        };
+        parked            = new IdentityHashMap<>();
+        parentShown       = this::parentShown;
+        sceneResized      = o -> sweep();
+        resizeWatched     = new WeakHashMap<>();
+        skippedAnimations = new LongAdder();
+        skippedResizes    = new LongAdder();
+        reveals           = new LongAdder();
+    }
+
+
+    // ******************** Methods *******************************************
+    void animationSkipped(final IosSwitch SWITCH) {
+        skippedAnimations.increment();
+        hide(SWITCH);
+    }
+
+    void resizeSkipped(final IosSwitch SWITCH) {
+        skippedResizes.increment();
+        hide(SWITCH);
+    }
+
+    /** Returns true if at least a part of the switch can be seen */
+    boolean isVisible(final IosSwitch SWITCH) {
+        if (SWITCH.viewportSlot >= 0) { return false; }
+        if (SWITCH.viewportPulse == pulse) { return true; }
+        if (null != hiddenBy(SWITCH)) { return false; }
+        SWITCH.viewportPulse = pulse;
+        nextPulse.request();
+        return true;
+    }
+
+    /** The switch moved or its window was shown, it is checked on the next pulse */
+    void moved(final IosSwitch SWITCH) {
+        if (SWITCH.viewportSlot < 0 || SWITCH.viewportMoved) { return; }
+        SWITCH.viewportMoved = true;
+        if (movedCount == moved.length) { moved = Arrays.copyOf(moved, movedCount * 2); }
+        moved[movedCount++] = SWITCH;
+        run();
+    }
+
+    /** Forgets the switch without revealing it, e.g. when it is disposed */
+    void remove(final IosSwitch SWITCH) {
+        if (SWITCH.viewportSlot < 0) { return; }
+        removeAt(SWITCH.viewportSlot);
+    }
+
+    int getHiddenCount() { return hiddenCount; }
+
+    long getSkippedAnimations() { return skippedAnimations.sum(); }
+
+    long getSkippedResizes() { return skippedResizes.sum(); }
+
+    long getReveals() { return reveals.sum(); }
+
+    void resetCounters() {
+        skippedAnimations.reset();
+        skippedResizes.reset();
+        reveals.reset();
+    }
+
+    private void hide(final IosSwitch SWITCH) {
+        if (SWITCH.viewportSlot >= 0) { return; }
+        if (hiddenCount == hidden.length) { hidden = Arrays.copyOf(hidden, hiddenCount * 2); }
+        SWITCH.viewportSlot   = hiddenCount;
+        hidden[hiddenCount++] = SWITCH;
+        SWITCH.watchViewport(true);
+        Scene scene = SWITCH.getScene();
+        if (null != scene && null == resizeWatched.put(scene, Boolean.TRUE)) {
+            scene.widthProperty().addListener(sceneResized);
+            scene.heightProperty().addListener(sceneResized);
+        }
+        // Checked once on the next pulse, a switch below an invisible parent is parked there
+        moved(SWITCH);
+    }
+
+    /** A resized scene can reveal any hidden switch, all of them are checked over the next pulses */
+    private void sweep() {
+        if (0 == hiddenCount) { return; }
+        sweepLeft = hiddenCount;
+        cursor    = 0;
+        run();
+    }
+
+    private void run() {
+        if (running) { return; }
+        running = true;
+        start();
+    }
+
+    @Override public void handle(final long now) {
+        for (int i = 0 ; i < movedCount ; i++) {
+            IosSwitch control = moved[i];
+            moved[i] = null;
+            control.viewportMoved = false;
+            if (control.viewportSlot >= 0) { check(control); }
+        }
+        movedCount = 0;
+
+        // A revealed switch is replaced by the last one, so the cursor only moves on for switches that stay hidden
+        final long DEADLINE = System.nanoTime() + SWEEP_BUDGET;
+        while (sweepLeft > 0 && cursor < hiddenCount && System.nanoTime() < DEADLINE) {
+            sweepLeft--;
+            if (null != hidden[cursor].viewportParkedBy || !check(hidden[cursor])) { cursor++; }
+        }
+        if (cursor >= hiddenCount) { sweepLeft = 0; }
+        if (0 == movedCount && 0 == sweepLeft) {
+            running = false;
+            stop();
+        }
+    }
+
+    private void parentShown(final Observable VISIBLE) {
+        Node           parent   = (Node) ((ReadOnlyProperty<?>) VISIBLE).getBean();
+        Set<IosSwitch> switches = parked.remove(parent);
+        parent.visibleProperty().removeListener(parentShown);
+        if (null == switches) { return; }
+        for (IosSwitch control : switches) {
+            control.viewportParkedBy = null;
+            moved(control);
+        }
+    }
+
+    /**
+     * Returns true if the switch was revealed and removed. Switches below an
+     * invisible parent wait for that parent instead of being swept, so all
+     * switches of a tab are revealed on the pulse the tab is shown.
+     */
+    private boolean check(final IosSwitch SWITCH) {
+        Node hiddenBy = hiddenBy(SWITCH);
+        // A parked switch that moved is still parked if the same parent hides it
+        if (hiddenBy != SWITCH.viewportParkedBy) { unpark(SWITCH); }
+        if (null != hiddenBy) {
+            if (hiddenBy != SWITCH && null == SWITCH.viewportParkedBy) {
+                Set<IosSwitch> switches = parked.get(hiddenBy);
+                if (null == switches) {
+                    switches = Collections.newSetFromMap(new IdentityHashMap<>());
+                    parked.put(hiddenBy, switches);
+                    hiddenBy.visibleProperty().addListener(parentShown);
+                }
+                switches.add(SWITCH);
+                SWITCH.viewportParkedBy = hiddenBy;
+            }
+            return false;
+        }
+        removeAt(SWITCH.viewportSlot);
+        reveals.increment();
+        SWITCH.revealed();
+        return true;
+    }
+
+    /**
+     * Returns null if at least a part of the switch can be seen, the invisible
+     * parent if one hides it and the switch itself otherwise.
+     */
+    static Node hiddenBy(final IosSwitch SWITCH) {
+        Scene scene = SWITCH.getScene();
+        if (null == scene || null == scene.getWindow() || !scene.getWindow().isShowing()) { return SWITCH; }
+        for (Node node = SWITCH ; null != node ; node = node.getParent()) {
+            if (!node.isVisible()) { return node; }
+        }
+        Bounds bounds = SWITCH.localToScene(SWITCH.getBoundsInLocal());
+        if (bounds.getMaxX() < 0 || bounds.getMaxY() < 0 || bounds.getMinX() > scene.getWidth() || bounds.getMinY() > scene.getHeight()) { return SWITCH; }
+        for (Node node = SWITCH ; null != node ; node = node.getParent()) {
+            Node clip = node.getClip();
+            if (null != clip && !node.localToScene(clip.getBoundsInParent()).intersects(bounds)) { return SWITCH; }
+        }
+        return null;
+    }
+
+    private void removeAt(final int SLOT) {
+        IosSwitch control = hidden[SLOT];
+        IosSwitch last    = hidden[--hiddenCount];
+        hidden[SLOT]        = last;
+        last.viewportSlot   = SLOT;
+        hidden[hiddenCount] = null;
+        control.viewportSlot = -1;
+        unpark(control);
+        control.watchViewport(false);
+    }
+
+    /** Removes the switch from the parent that hid it, the listener of the parent goes with its last switch */
+    private void unpark(final IosSwitch SWITCH) {
+        Node parent = SWITCH.viewportParkedBy;
+        if (null == parent) { return; }
+        SWITCH.viewportParkedBy = null;
+        Set<IosSwitch> switches = parked.get(parent);
+        if (null == switches) { return; }
+        switches.remove(SWITCH);
+        if (switches.isEmpty()) {
+            parked.remove(parent);
+            parent.visibleProperty().removeListener(parentShown);
+        }
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) 2018 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.ioswitch;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+
+/**
+ * Bounded stream of toggle events for auditing. Every state change of a
+ * switch that uses the stream (see IosSwitch.setToggleEventStream() and
+ * setDefault()) is written on the FX thread into a preallocated ring buffer
+ * of primitive records, publishing never blocks and never allocates. When
+ * the buffer is full the OverflowPolicy decides which event is dropped.
+ * <p>
+ * Consumer threads either poll with drain() or subscribe() a Subscriber
+ * that gets the events on its own thread with the demand semantics of
+ * java.util.concurrent.Flow, which is not available on Java 8.
+ * <p>
+ * The switch id of an event is the audit id of the switch (see
+ * IosSwitch.setAuditId()), the same id the Flight Recorder events use.
+ * IosSwitch, CanvasIosSwitch and IosSwitchGrid publish, a cell of the grid
+ * uses the audit id of the grid plus its index.
+ */
+public final class ToggleEventStream {
+    public enum Cause { PROGRAMMATIC, CLICK, LONG_PRESS, SWIPE }
+
+    public enum OverflowPolicy {
+        /** Keeps the buffered events and drops the new one */
+        DROP_NEWEST,
+        /** Drops the oldest buffered event to make room for the new one */
+        DROP_OLDEST
+    }
+
+    private static final Cause[]           CAUSES       = Cause.values();
+    private static final int               BATCH_SIZE   = 256;
+    private static final long              IDLE_NANOS   = 1_000_000;
+    private static       ToggleEventStream defaultStream;
+    private        final OverflowPolicy    policy;
+    private        final int               capacity;
+    private        final int               mask;
+    private        final int[]             ids;
+    private        final long[]            times;
+    private        final byte[]            flags;
+    private        final AtomicLong        head;
+    private        final AtomicLong        tail;
+    private        final LongAdder         published;
+    private        final LongAdder         dropped;
+
+
+    // ******************** Constructors **************************************
+    /**
+     * @param CAPACITY maximum number of buffered events, rounded up to a power of two
+     * @param POLICY   decides which event is dropped when the buffer is full
+     */
+    public ToggleEventStream(final int CAPACITY, final OverflowPolicy POLICY) {
+        if (CAPACITY < 1 || CAPACITY > 1 << 30) { throw new IllegalArgumentException("Capacity must be between 1 and 2^30"); }
+        if (null == POLICY) { throw new IllegalArgumentException("Policy must not be null"); }
+        policy    = POLICY;
+        capacity  = 1 == CAPACITY ? 1 : Integer.highestOneBit(CAPACITY - 1) << 1;
+        mask      = capacity - 1;
+        ids       = new int[capacity];
+        times     = new long[capacity];
+        flags     = new byte[capacity];
+        head      = new AtomicLong();
+        tail      = new AtomicLong();
+        published = new LongAdder();
+        dropped   = new LongAdder();
+    }
+
+
+    // ******************** Methods *******************************************
+    /** Returns the stream of all switches that have no stream of their own or null */
+    public static ToggleEventStream getDefault() { return defaultStream; }
+    /** Must be called on the FX thread */
+    public static void setDefault(final ToggleEventStream STREAM) { defaultStream = STREAM; }
+
+    public OverflowPolicy getPolicy() { return policy; }
+
+    public int capacity() { return capacity; }
+
+    /** Returns the number of buffered events */
+    public int size() { return (int) Math.max(0, head.get() - tail.get()); }
+
+    /** Returns the number of events that were written into the buffer */
+    public long getPublished() { return published.sum(); }
+
+    /** Returns the number of events that were lost because the buffer was full */
+    public long getDropped() { return dropped.sum(); }
+
+    /** Called on the FX thread, which is the only producer */
+    void publish(final int SWITCH_ID, final boolean SELECTED, final Cause CAUSE) {
+        final long HEAD = head.get();
+        long       t    = tail.get();
+        if (HEAD - t >= capacity) {
+            if (OverflowPolicy.DROP_NEWEST == policy) {
+                dropped.increment();
+                return;
+            }
+            // A consumer might take the oldest event at the same time, only one of both wins
+            while (HEAD - t >= capacity) {
+                if (tail.compareAndSet(t, t + 1)) {
+                    dropped.increment();
+                    break;
+                }
+                t = tail.get();
+            }
+        }
+        final int SLOT = (int) HEAD & mask;
+        ids[SLOT]   = SWITCH_ID;
+        times[SLOT] = System.nanoTime();
+        flags[SLOT] = (byte) (CAUSE.ordinal() << 1 | (SELECTED ? 1 : 0));
+        head.lazySet(HEAD + 1);
+        published.increment();
+    }
+
+    /**
+     * Hands up to MAX buffered events to the consumer and returns their number.
+     * Can be called from any thread.
+     */
+    public int drain(final Consumer CONSUMER, final int MAX) {
+        int count = 0;
+        while (count < MAX) {
+            final long T = tail.get();
+            if (T >= head.get()) { break; }
+            final int  SLOT = (int) T & mask;
+            final int  ID   = ids[SLOT];
+            final long TIME = times[SLOT];
+            final byte FLAG = flags[SLOT];
+            // The record is only valid if it was not dropped while it was read
+            if (!tail.compareAndSet(T, T + 1)) { continue; }
+            CONSUMER.accept(ID, (FLAG & 1) != 0, TIME, CAUSES[FLAG >>> 1]);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Delivers the events to the subscriber on a new daemon thread as long as
+     * it requested more. The thread ends when the subscription is cancelled.
+     */
+    public Subscription subscribe(final Subscriber SUBSCRIBER) {
+        SubscriberThread thread = new SubscriberThread(SUBSCRIBER);
+        SUBSCRIBER.onSubscribe(thread);
+        thread.start();
+        return thread;
+    }
+
+
+    // ******************** Inner Classes *************************************
+    public interface Consumer {
+        void accept(int switchId, boolean selected, long nanoTime, Cause cause);
+    }
+
+    public interface Subscriber {
+        void onSubscribe(Subscription subscription);
+
+        void onToggle(int switchId, boolean selected, long nanoTime, Cause cause);
+
+        void onError(Throwable throwable);
+    }
+
+    public interface Subscription {
+        /** Adds N events to the demand, Long.MAX_VALUE means unbounded */
+        void request(long n);
+
+        void cancel();
+    }
+
+    private final class SubscriberThread extends Thread implements Subscription {
+        private final Subscriber    subscriber;
+        private final Consumer      consumer;
+        private final AtomicLong    demand;
+        private final AtomicBoolean cancelled;
+
+
+        // ******************** Constructors **********************************
+        SubscriberThread(final Subscriber SUBSCRIBER) {
+            super("ToggleEventStream-subscriber");
+            setDaemon(true);
+            subscriber = SUBSCRIBER;
+            consumer   = SUBSCRIBER::onToggle;
+            demand     = new AtomicLong();
+            cancelled  = new AtomicBoolean(false);
+        }
+
+
+        // ******************** Methods ***************************************
+        @Override public void request(final long N) {
+            if (N <= 0) {
+                cancel();
+                subscriber.onError(new IllegalArgumentException("Request must be positive: " + N));
+                return;
+            }
+            long current;
+            long next;
+            do {
+                current = demand.get();
+                next    = current + N < 0 ? Long.MAX_VALUE : current + N;
+            } while (!demand.compareAndSet(current, next));
+            LockSupport.unpark(this);
+        }
+
+        @Override public void cancel() {
+            cancelled.set(true);
+            LockSupport.unpark(this);
+        }
+
+        @Override public void run() {
+            try {
+                while (!cancelled.get()) {
+                    long requested = demand.get();
+                    if (0 == requested) {
+                        LockSupport.park(this);
+                        continue;
+                    }
+                    int count = drain(consumer, (int) Math.min(requested, BATCH_SIZE));
+                    if (0 == count) {
+                        LockSupport.parkNanos(this, IDLE_NANOS);
+                    } else if (requested != Long.MAX_VALUE) {
+                        demand.addAndGet(-count);
+                    }
+                }
+            } catch (Throwable t) {
+                cancelled.set(true);
+                subscriber.onError(t);
+            }
+        }
+    }
+}